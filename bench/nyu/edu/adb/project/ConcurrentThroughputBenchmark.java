@@ -0,0 +1,118 @@
+package nyu.edu.adb.project;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of {@link ConcurrentDatabase} from 1 to 8 client threads. Every thread runs read-write transactions of a
+ * few reads and writes, mostly on variables of its own partition and with a configurable share of operations on a
+ * variable anywhere, so it measures how far the striped fast path scales and how much the exclusive engine lock for
+ * begin, end and waiting operations costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentThroughputBenchmark {
+
+    private static final int MAX_THREADS = 8;
+
+    @Param({"32"})
+    int variablesPerThread;
+
+    @Param({"8"})
+    int operationsPerTransaction;
+
+    @Param({"0", "10"})
+    int sharedPercent;
+
+    private ConcurrentDatabase database;
+    private AtomicInteger nextClient;
+
+    /**
+     * Transaction and partition of one client thread
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        int transaction;
+        int firstVariable;
+        SplittableRandom random;
+
+        @Setup(Level.Iteration)
+        public void register(ConcurrentThroughputBenchmark benchmark) {
+            int clientId = benchmark.nextClient.getAndIncrement();
+            transaction = benchmark.database.transaction("T" + clientId);
+            firstVariable = 1 + clientId * benchmark.variablesPerThread;
+            random = new SplittableRandom(clientId);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createDatabase() {
+        database = new ConcurrentDatabase(DatabaseConfig.builder()
+                .variables(MAX_THREADS * variablesPerThread)
+                .build(), OutputSink.none());
+        nextClient = new AtomicInteger();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads1(Client client) {
+        runTransaction(client);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void threads2(Client client) {
+        runTransaction(client);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads4(Client client) {
+        runTransaction(client);
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public void threads8(Client client) {
+        runTransaction(client);
+    }
+
+    /**
+     * Runs one transaction of the client to its end. A waiting client moves the clock, which runs deadlock detection,
+     * and yields to the holders of the lock. An aborted transaction stops issuing operations.
+     */
+    private void runTransaction(Client client) {
+        int transaction = client.transaction;
+        database.begin(transaction);
+        for (int operation = 0; operation < operationsPerTransaction; operation++) {
+            int variable = client.random.nextInt(100) < sharedPercent
+                    ? 1 + client.random.nextInt(MAX_THREADS * variablesPerThread)
+                    : client.firstVariable + client.random.nextInt(variablesPerThread);
+            if (client.random.nextBoolean()) {
+                database.write(transaction, variable, operation);
+            } else {
+                database.read(transaction, variable);
+            }
+            while (database.isWaiting(transaction)) {
+                database.noOp();
+                Thread.yield();
+            }
+            if (!database.isActive(transaction)) {
+                return;
+            }
+        }
+        database.end(transaction);
+    }
+}
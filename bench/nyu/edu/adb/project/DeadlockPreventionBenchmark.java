@@ -0,0 +1,110 @@
+package nyu.edu.adb.project;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deadlock detection with wait-die and wound-wait prevention and lock wait timeouts on a contended
+ * workload. A fixed number of read-write transactions run interleaved, each reading and writing a few variables of a
+ * small hot set. A transaction which is waiting for a lock issues nothing, and an aborted transaction starts over
+ * with new operations.
+ * <p>
+ * The throughput is the number of executed operations, the auxiliary counters report committed and aborted
+ * transactions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeadlockPreventionBenchmark {
+
+    @Param({"DETECTION", "WAIT_DIE", "WOUND_WAIT", "TIMEOUT"})
+    String deadlockHandling;
+
+    @Param({"8"})
+    int concurrentTransactions;
+
+    @Param({"20"})
+    int hotVariables;
+
+    @Param({"4"})
+    int operationsPerTransaction;
+
+    private static final int STEPS = 10000;
+
+    private Database database;
+    private int[] transactions;
+    private int[] remainingOperations;
+    private SplittableRandom random;
+
+    /**
+     * Transactions finished by the measured invocations
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long commits;
+        public long aborts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+            aborts = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createDatabase() {
+        database = new Database(DatabaseConfig.builder()
+                .variables(Math.max(20, hotVariables))
+                .deadlockHandling(DatabaseConfig.DeadlockHandling.valueOf(deadlockHandling))
+                .build(), OutputSink.none());
+        transactions = new int[concurrentTransactions];
+        remainingOperations = new int[concurrentTransactions];
+        for (int i = 0; i < concurrentTransactions; i++) {
+            transactions[i] = database.transaction("T" + i);
+        }
+        random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void contendedTransactions(Outcomes outcomes) {
+        TransactionManager transactionManager = database.transactionManager;
+        int abortsBefore = abortCount(transactionManager);
+        for (int step = 0; step < STEPS; step++) {
+            int slot = step % concurrentTransactions;
+            int transaction = transactions[slot];
+            if (!transactionManager.isActive(transaction)) {
+                database.begin(transaction);
+                remainingOperations[slot] = operationsPerTransaction;
+            } else if (transactionManager.isWaiting(transaction)) {
+                database.noOp();
+            } else if (remainingOperations[slot] == 0) {
+                database.end(transaction);
+                outcomes.commits++;
+            } else {
+                remainingOperations[slot]--;
+                int variable = 1 + random.nextInt(hotVariables);
+                if (random.nextBoolean()) {
+                    database.write(transaction, variable, step);
+                } else {
+                    database.read(transaction, variable);
+                }
+            }
+        }
+        outcomes.aborts += abortCount(transactionManager) - abortsBefore;
+    }
+
+    private static int abortCount(TransactionManager transactionManager) {
+        int aborts = 0;
+        for (AbortReason reason : AbortReason.values()) {
+            aborts += transactionManager.getAbortCount(reason);
+        }
+        return aborts;
+    }
+}
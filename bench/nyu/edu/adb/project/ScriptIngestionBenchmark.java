@@ -0,0 +1,146 @@
+package nyu.edu.adb.project;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Scanner based script ingestion with the streaming {@link ScriptReader}, both on their own and when
+ * executing the script against a database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptIngestionBenchmark {
+
+    @Param({"100000"})
+    int transactions;
+
+    private Path script;
+
+    @Setup(Level.Trial)
+    public void writeScript() throws IOException {
+        script = Files.createTempFile("ingestion", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(script)) {
+            for (int i = 0; i < transactions; i++) {
+                if (i % 10 == 0) {
+                    writer.write("// transactions " + i + " to " + (i + 9));
+                    writer.newLine();
+                }
+                String transaction = "T" + (i % 1000);
+                String variable = "x" + (1 + i % 20);
+                writer.write("begin(" + transaction + ")");
+                writer.newLine();
+                writer.write("W(" + transaction + ", " + variable + ", " + i + ")");
+                writer.newLine();
+                writer.write("R(" + transaction + "," + variable + ")");
+                writer.newLine();
+                writer.write("end(" + transaction + ")");
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteScript() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public void scannerIngestion(Blackhole blackhole) throws IOException {
+        try (Scanner sc = new Scanner(script.toFile())) {
+            while (sc.hasNextLine()) {
+                blackhole.consume(sc.nextLine());
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamingIngestion(Blackhole blackhole) throws IOException {
+        new ScriptReader(new ConsumingHandler(blackhole), new NameTable()).execute(script);
+    }
+
+    @Benchmark
+    public Database scannerExecution() throws Exception {
+        Database database = new Database(DatabaseConfig.defaults(), OutputSink.none());
+        try (Scanner sc = new Scanner(script.toFile())) {
+            while (sc.hasNextLine()) {
+                database.handleQuery(sc.nextLine());
+            }
+        }
+        return database;
+    }
+
+    @Benchmark
+    public Database streamingExecution() throws IOException {
+        Database database = new Database(DatabaseConfig.defaults(), OutputSink.none());
+        new ScriptReader(database, database.getTransactionNames()).execute(script);
+        return database;
+    }
+
+    /**
+     * Hands every decoded command to the blackhole so that only decoding is measured
+     */
+    private static class ConsumingHandler implements CommandHandler {
+        private final Blackhole blackhole;
+
+        ConsumingHandler(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void begin(int transaction) {
+            blackhole.consume(transaction);
+        }
+
+        @Override
+        public void beginRO(int transaction) {
+            blackhole.consume(transaction);
+        }
+
+        @Override
+        public void read(int transaction, int variable) {
+            blackhole.consume(transaction);
+            blackhole.consume(variable);
+        }
+
+        @Override
+        public void write(int transaction, int variable, int value) {
+            blackhole.consume(transaction);
+            blackhole.consume(variable);
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void end(int transaction) {
+            blackhole.consume(transaction);
+        }
+
+        @Override
+        public void fail(int siteId) {
+            blackhole.consume(siteId);
+        }
+
+        @Override
+        public void recover(int siteId) {
+            blackhole.consume(siteId);
+        }
+
+        @Override
+        public void dump() {
+        }
+
+        @Override
+        public void noOp() {
+            blackhole.consume(0);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package nyu.edu.adb.project;
+
+/**
+ * Why a read-write transaction was aborted. The description is printed after the abort.
+ */
+enum AbortReason {
+    DEADLOCK("Deadlock removal"),
+    SITE_FAILURE("Site failure"),
+    WAIT_DIE("Wait-die, requested a lock held by an older transaction"),
+    WOUND_WAIT("Wound-wait, wounded by an older transaction"),
+    LOCK_WAIT_TIMEOUT("Lock wait timeout"),
+    CLIENT_REQUEST("Requested by the client");
+
+    private final String description;
+
+    AbortReason(String description) {
+        this.description = description;
+    }
+
+    String getDescription() {
+        return description;
+    }
+}
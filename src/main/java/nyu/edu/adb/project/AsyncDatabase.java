@@ -0,0 +1,360 @@
+package nyu.edu.adb.project;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Front of a {@link ConcurrentDatabase} whose reads, writes and ends return futures instead of printing their results
+ * when they are granted later. A read completes with the value read, a write once it is performed and an end with
+ * true if the transaction committed. When the transaction is aborted, its pending operation completes exceptionally
+ * with a {@link TransactionAbortedException}, and so do the operations issued after it. An operation the database
+ * rejects, e.g. one of a transaction which has not begun or on an unknown variable, completes exceptionally with the
+ * exception thrown, and the operations after it are issued as usual.
+ * <p>
+ * A client may issue the operations of a transaction without waiting for the previous ones: they are queued in the
+ * pipeline of the transaction and each one is handed to the database once the one before it has completed. The
+ * futures are completed after the database has been left, on the thread of whichever call of this front collected
+ * them, so their dependent actions may call it again. The clock only moves on {@link #noOp()}, so a client whose
+ * operations wait calls it to have deadlocks detected and lock wait timeouts expire.
+ */
+class AsyncDatabase implements AutoCloseable {
+    private final ConcurrentDatabase database;
+    private final Map<Integer, Pipeline> pipelines;
+    // Completions collected while the engine is locked, run once the engine has been left
+    private final Queue<Runnable> completions;
+    private final ThreadLocal<Boolean> completing;
+
+    AsyncDatabase(DatabaseConfig config) {
+        this(config, OutputSink.console());
+    }
+
+    /**
+     * @param output sink of the console output of the database, e.g. {@link OutputSink#none()} when the futures are
+     * all the client needs
+     */
+    AsyncDatabase(DatabaseConfig config, OutputSink output) {
+        database = new ConcurrentDatabase(config, output);
+        pipelines = new ConcurrentHashMap<>();
+        completions = new ConcurrentLinkedQueue<>();
+        completing = ThreadLocal.withInitial(() -> false);
+        database.setOperationListener(new PipelineCompleter());
+    }
+
+    /**
+     * @see Database#transaction(String)
+     */
+    int transaction(String transactionName) {
+        int transaction = database.transaction(transactionName);
+        pipelines.computeIfAbsent(transaction, id -> new Pipeline(transactionName));
+        return transaction;
+    }
+
+    /**
+     * @see Database#variable(String)
+     */
+    int variable(String variableName) {
+        return database.variable(variableName);
+    }
+
+    /**
+     * Begins a read-write transaction
+     * @throws IllegalStateException if the previous run of the transaction has not completed its end
+     */
+    void begin(int transaction) {
+        pipeline(transaction).restart();
+        database.begin(transaction);
+    }
+
+    /**
+     * Begins a read-only transaction
+     * @throws IllegalStateException if the previous run of the transaction has not completed its end
+     */
+    void beginRO(int transaction) {
+        pipeline(transaction).restart();
+        database.beginRO(transaction);
+    }
+
+    /**
+     * @return completed with the value read once the read is granted
+     */
+    CompletableFuture<Integer> read(int transaction, int variable) {
+        Pipeline pipeline = pipeline(transaction);
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        pipeline.enqueue(result, () -> {
+            if (pipeline.await(variable, result, null)) {
+                database.read(transaction, variable);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return completed once the write is performed
+     */
+    CompletableFuture<Void> write(int transaction, int variable, int value) {
+        Pipeline pipeline = pipeline(transaction);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        pipeline.enqueue(result, () -> {
+            if (pipeline.await(variable, null, result)) {
+                database.write(transaction, variable, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Ends the transaction once its operations issued before have completed
+     * @return completed with true if the transaction committed and false if it was aborted
+     */
+    CompletableFuture<Boolean> end(int transaction) {
+        Pipeline pipeline = pipeline(transaction);
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        pipeline.enqueue(result, () -> {
+            if (pipeline.awaitEnd(result)) {
+                database.end(transaction);
+            }
+        });
+        return result;
+    }
+
+    void fail(int siteId) {
+        database.fail(siteId);
+        completePending();
+    }
+
+    void recover(int siteId) {
+        database.recover(siteId);
+        completePending();
+    }
+
+    void dump() {
+        database.dump();
+    }
+
+    /**
+     * Moves the clock, which also runs deadlock detection and expires lock wait timeouts
+     */
+    void noOp() {
+        database.noOp();
+        completePending();
+    }
+
+    @Override
+    public void close() {
+        database.close();
+    }
+
+    private Pipeline pipeline(int transaction) {
+        Pipeline pipeline = pipelines.get(transaction);
+        if (pipeline == null) {
+            throw new IllegalArgumentException("Unknown transaction handle " + transaction);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Runs the collected completions. Completions which issue further operations run in the loop of the outermost
+     * call on the thread, so long pipelines do not nest calls.
+     */
+    private void completePending() {
+        if (completing.get()) {
+            return;
+        }
+        completing.set(true);
+        try {
+            Runnable completion;
+            while ((completion = completions.poll()) != null) {
+                completion.run();
+            }
+        } finally {
+            completing.set(false);
+        }
+    }
+
+    /**
+     * Operations of one run of a transaction, of which at most one is in the database at a time
+     */
+    private final class Pipeline {
+        private final String transactionName;
+        // Completed when the last operation issued so far has completed
+        private CompletableFuture<?> tail;
+        private boolean begun;
+        private boolean aborted;
+        private boolean ended;
+        private int awaitedVariable;
+        private CompletableFuture<Integer> awaitedRead;
+        private CompletableFuture<Void> awaitedWrite;
+        private CompletableFuture<Boolean> awaitedEnd;
+
+        private Pipeline(String transactionName) {
+            this.transactionName = transactionName;
+            tail = CompletableFuture.completedFuture(null);
+        }
+
+        synchronized void restart() {
+            if (!tail.isDone()) {
+                throw new IllegalStateException("Transaction " + transactionName + " has not ended");
+            }
+            begun = true;
+            aborted = false;
+            ended = false;
+        }
+
+        /**
+         * Issues the operation once the previous one has completed, whether it succeeded or not. The operation may be
+         * issued right away, so it is chained outside the monitor of the pipeline, which the engine takes to complete
+         * operations. If the database throws, the operation completes exceptionally, so the next one is issued.
+         */
+        void enqueue(CompletableFuture<?> result, Runnable issue) {
+            CompletableFuture<?> previous;
+            synchronized (this) {
+                previous = tail;
+                tail = result;
+            }
+            previous.whenComplete((value, failure) -> {
+                try {
+                    issue.run();
+                } catch (RuntimeException e) {
+                    rejected();
+                    completions.add(() -> result.completeExceptionally(e));
+                }
+                completePending();
+            });
+        }
+
+        /**
+         * The operation to complete next was rejected by the database, so there is none
+         */
+        private synchronized void rejected() {
+            awaitedRead = null;
+            awaitedWrite = null;
+            awaitedEnd = null;
+        }
+
+        /**
+         * Makes the read or write the operation to complete next
+         * @return false if the transaction has not begun, was aborted or has ended, in which case the operation has
+         * failed
+         */
+        synchronized boolean await(int variable, CompletableFuture<Integer> read, CompletableFuture<Void> write) {
+            if (!begun || aborted || ended) {
+                RuntimeException failure = aborted ? new TransactionAbortedException(transactionName)
+                        : new IllegalStateException("Transaction " + transactionName
+                        + (begun ? " has ended" : " has not begun"));
+                completions.add(read != null ? () -> read.completeExceptionally(failure)
+                        : () -> write.completeExceptionally(failure));
+                return false;
+            }
+            awaitedVariable = variable;
+            awaitedRead = read;
+            awaitedWrite = write;
+            return true;
+        }
+
+        /**
+         * Makes the end the operation to complete next
+         * @return false if the transaction was aborted or has ended, in which case the end has completed, or if it has
+         * not begun, in which case the end has failed
+         */
+        synchronized boolean awaitEnd(CompletableFuture<Boolean> end) {
+            if (!begun) {
+                IllegalStateException failure =
+                        new IllegalStateException("Transaction " + transactionName + " has not begun");
+                completions.add(() -> end.completeExceptionally(failure));
+                return false;
+            }
+            if (aborted || ended) {
+                boolean committed = !aborted;
+                completions.add(() -> end.complete(committed));
+                return false;
+            }
+            awaitedEnd = end;
+            return true;
+        }
+
+        synchronized void readCompleted(int variable, int value) {
+            // A read-only transaction may be served again when another site recovers, only the awaited read counts
+            if (awaitedRead != null && variable == awaitedVariable) {
+                CompletableFuture<Integer> read = awaitedRead;
+                awaitedRead = null;
+                completions.add(() -> read.complete(value));
+            }
+        }
+
+        synchronized void writeCompleted(int variable) {
+            if (awaitedWrite != null && variable == awaitedVariable) {
+                CompletableFuture<Void> write = awaitedWrite;
+                awaitedWrite = null;
+                completions.add(() -> write.complete(null));
+            }
+        }
+
+        synchronized void aborted() {
+            aborted = true;
+            TransactionAbortedException abort = new TransactionAbortedException(transactionName);
+            if (awaitedRead != null) {
+                CompletableFuture<Integer> read = awaitedRead;
+                completions.add(() -> read.completeExceptionally(abort));
+            } else if (awaitedWrite != null) {
+                CompletableFuture<Void> write = awaitedWrite;
+                completions.add(() -> write.completeExceptionally(abort));
+            } else if (awaitedEnd != null) {
+                CompletableFuture<Boolean> end = awaitedEnd;
+                completions.add(() -> end.complete(false));
+            }
+            awaitedRead = null;
+            awaitedWrite = null;
+            awaitedEnd = null;
+        }
+
+        synchronized void ended(boolean committed) {
+            ended = true;
+            aborted = !committed;
+            if (awaitedEnd != null) {
+                CompletableFuture<Boolean> end = awaitedEnd;
+                awaitedEnd = null;
+                completions.add(() -> end.complete(committed));
+            }
+        }
+    }
+
+    /**
+     * Hands the results of the transaction manager to the pipelines of their transactions
+     */
+    private class PipelineCompleter implements OperationListener {
+        @Override
+        public void readCompleted(int transactionId, int variable, int value) {
+            Pipeline pipeline = pipelines.get(transactionId);
+            if (pipeline != null) {
+                pipeline.readCompleted(variable, value);
+            }
+        }
+
+        @Override
+        public void writeCompleted(int transactionId, int variable) {
+            Pipeline pipeline = pipelines.get(transactionId);
+            if (pipeline != null) {
+                pipeline.writeCompleted(variable);
+            }
+        }
+
+        @Override
+        public void transactionAborted(int transactionId, AbortReason reason) {
+            Pipeline pipeline = pipelines.get(transactionId);
+            if (pipeline != null) {
+                pipeline.aborted();
+            }
+        }
+
+        @Override
+        public void transactionEnded(int transactionId, boolean committed) {
+            Pipeline pipeline = pipelines.get(transactionId);
+            if (pipeline != null) {
+                pipeline.ended(committed);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package nyu.edu.adb.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Searches the waits-for graph for cycles on a separate thread. The graph belongs to the executing thread, so the
+ * detector only asks for a snapshot, which the executor copies at its next tick, and the cycles found in the snapshot
+ * are handed back to the executor, which checks that they still exist before it aborts a victim. The executor never
+ * waits for the detector.
+ * <p>
+ * The time between two searches adapts to the graph: it is halved when a search finds a cycle or the graph changed
+ * more than before, and doubled when the graph did not change at all.
+ */
+class BackgroundDeadlockDetector {
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final BlockingQueue<DeadLockManager> snapshots;
+    private final ConcurrentLinkedQueue<List<Integer>> foundCycles;
+    private final Thread thread;
+    private volatile boolean snapshotRequested;
+    private volatile boolean stopped;
+
+    // Written by the detector thread only
+    private volatile long intervalNanos;
+    private long lastModificationCount;
+    private long lastModifications;
+    private volatile long searches;
+    private volatile long cyclesFound;
+    private volatile long searchNanos;
+
+    /**
+     * @param minIntervalMillis shortest time between two searches
+     * @param maxIntervalMillis longest time between two searches
+     */
+    BackgroundDeadlockDetector(int minIntervalMillis, int maxIntervalMillis) {
+        minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis);
+        intervalNanos = minIntervalNanos;
+        snapshots = new ArrayBlockingQueue<>(1);
+        foundCycles = new ConcurrentLinkedQueue<>();
+        thread = new Thread(this::run, "repcrec-deadlock-detector");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops the detector thread and waits up to a minute for it to finish. An interrupted caller stops waiting and
+     * keeps its interrupt status.
+     */
+    void stop() {
+        stopped = true;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called by the executing thread at every tick. Hands a snapshot of the graph to the detector if it asked for one
+     * and returns the cycles found since the last call.
+     * @param graph the waits-for graph of the executor
+     * @return cycles found in earlier snapshots, which may have been broken since
+     */
+    List<List<Integer>> exchange(DeadLockManager graph) {
+        if (snapshotRequested) {
+            snapshotRequested = false;
+            snapshots.offer(graph.snapshot());
+        }
+        if (foundCycles.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<List<Integer>> cycles = new ArrayList<>();
+        List<Integer> cycle;
+        while ((cycle = foundCycles.poll()) != null) {
+            cycles.add(cycle);
+        }
+        return cycles;
+    }
+
+    long getSearches() {
+        return searches;
+    }
+
+    long getCyclesFound() {
+        return cyclesFound;
+    }
+
+    /**
+     * @return nanoseconds spent searching snapshots
+     */
+    long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return current time between two searches
+     */
+    long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    private void run() {
+        while (!stopped) {
+            LockSupport.parkNanos(intervalNanos);
+            snapshotRequested = true;
+            DeadLockManager snapshot;
+            try {
+                snapshot = snapshots.poll(maxIntervalNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (snapshot == null) {
+                // The executor is idle, nothing can have changed
+                continue;
+            }
+            long startTime = System.nanoTime();
+            List<List<Integer>> cycles = snapshot.getDeadLockCycles();
+            for (List<Integer> cycle : cycles) {
+                foundCycles.offer(new ArrayList<>(cycle));
+            }
+            searchNanos += System.nanoTime() - startTime;
+            searches++;
+            cyclesFound += cycles.size();
+            adaptInterval(snapshot.getModificationCount(), !cycles.isEmpty());
+        }
+    }
+
+    private void adaptInterval(long modificationCount, boolean foundCycle) {
+        long modifications = modificationCount - lastModificationCount;
+        if (foundCycle || modifications > lastModifications) {
+            intervalNanos = Math.max(minIntervalNanos, intervalNanos / 2);
+        } else if (modifications == 0) {
+            intervalNanos = Math.min(maxIntervalNanos, intervalNanos * 2);
+        }
+        lastModificationCount = modificationCount;
+        lastModifications = modifications;
+    }
+
+    @Override
+    public String toString() {
+        return searches + " searches found " + cyclesFound + " cycles in " + searchNanos / 1_000_000 + " ms, interval "
+                + intervalNanos / 1_000 + " us";
+    }
+}
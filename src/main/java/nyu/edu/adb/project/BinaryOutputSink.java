@@ -0,0 +1,53 @@
+package nyu.edu.adb.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Output sink which encodes lines straight into a byte buffer and writes it to its stream in blocks. The output of
+ * the database is ASCII, other characters are written as '?'.
+ */
+class BinaryOutputSink implements OutputSink {
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int length;
+
+    /**
+     * @param bufferSize number of bytes buffered before they are written to the stream
+     */
+    BinaryOutputSink(OutputStream out, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.out = out;
+        buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public synchronized void println(String line) {
+        for (int i = 0, n = line.length(); i < n; i++) {
+            char c = line.charAt(i);
+            put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+        put((byte) '\n');
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = 0;
+    }
+
+    private void put(byte b) {
+        if (length == buffer.length) {
+            flush();
+        }
+        buffer[length++] = b;
+    }
+}
@@ -0,0 +1,285 @@
+package nyu.edu.adb.project;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Client API of a {@link ConcurrentDatabase} in which every transaction runs on a thread of its own and reads and
+ * writes block until they are performed. A read or write whose lock is not granted parks the thread of the transaction
+ * while the operation sits in the wait queue, and the transaction manager unparks it when the operation is granted or
+ * the transaction is aborted.
+ * <p>
+ * Transactions run on virtual threads when the runtime has them (Java 21 and later), so a client may run tens of
+ * thousands of transactions at the same time, and on platform daemon threads otherwise. While some transaction is
+ * parked, a clock thread moves the clock every tick interval so that deadlocks are detected and lock wait timeouts
+ * expire.
+ */
+class BlockingDatabase implements AutoCloseable {
+    private static final long DEFAULT_TICK_INTERVAL_MILLIS = 1;
+
+    private final ConcurrentDatabase database;
+    private final Map<Integer, Session> sessions;
+    private final ThreadFactory threadFactory;
+    private final ScheduledExecutorService clock;
+    private final AtomicInteger parkedSessions;
+
+    BlockingDatabase(DatabaseConfig config) {
+        this(config, OutputSink.console());
+    }
+
+    /**
+     * @param output sink of the console output of the database, e.g. {@link OutputSink#none()} when the values read
+     * are all the client needs
+     */
+    BlockingDatabase(DatabaseConfig config, OutputSink output) {
+        this(config, output, DEFAULT_TICK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param output sink of the console output of the database
+     * @param tickIntervalMillis milliseconds between two ticks of the clock while some transaction is parked
+     */
+    BlockingDatabase(DatabaseConfig config, OutputSink output, long tickIntervalMillis) {
+        if (tickIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Tick interval must be positive");
+        }
+        database = new ConcurrentDatabase(config, output);
+        sessions = new ConcurrentHashMap<>();
+        threadFactory = transactionThreadFactory();
+        parkedSessions = new AtomicInteger();
+        clock = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "repcrec-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        clock.scheduleWithFixedDelay(() -> {
+            if (parkedSessions.get() > 0) {
+                database.noOp();
+            }
+        }, tickIntervalMillis, tickIntervalMillis, TimeUnit.MILLISECONDS);
+        database.setOperationListener(new SessionWakeup());
+    }
+
+    /**
+     * Virtual threads are looked up reflectively so that the sources still build for Java 8
+     */
+    private static ThreadFactory transactionThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class)
+                    .invoke(builder, "repcrec-transaction-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, "repcrec-transaction-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * @see Database#variable(String)
+     */
+    int variable(String variableName) {
+        return database.variable(variableName);
+    }
+
+    /**
+     * Runs a transaction on a thread of its own. The body issues the reads and writes of the transaction through its
+     * session and the transaction ends when the body returns. A body which throws aborts the transaction and its
+     * exception completes the result. A transaction must not run twice at the same time.
+     * @param transactionName name of the transaction, e.g. T1
+     * @param readOnly true for a read-only transaction
+     * @return completed with true if the transaction committed and false if it was aborted
+     */
+    CompletableFuture<Boolean> run(String transactionName, boolean readOnly, Consumer<Session> body) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        threadFactory.newThread(() -> {
+            try {
+                result.complete(runTransaction(transactionName, readOnly, body));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }).start();
+        return result;
+    }
+
+    private boolean runTransaction(String transactionName, boolean readOnly, Consumer<Session> body) {
+        int transaction = database.transaction(transactionName);
+        Session session = new Session(transactionName, transaction);
+        if (sessions.putIfAbsent(transaction, session) != null) {
+            throw new IllegalStateException("Transaction " + transactionName + " is already running");
+        }
+        try {
+            if (readOnly) {
+                database.beginRO(transaction);
+            } else {
+                database.begin(transaction);
+            }
+            try {
+                body.accept(session);
+            } catch (TransactionAbortedException e) {
+                return false;
+            } catch (RuntimeException | Error e) {
+                if (readOnly) {
+                    database.end(transaction);
+                } else {
+                    database.abort(transaction);
+                }
+                throw e;
+            }
+            if (session.aborted) {
+                return false;
+            }
+            database.end(transaction);
+            return session.committed;
+        } finally {
+            sessions.remove(transaction);
+        }
+    }
+
+    /**
+     * Stops the clock and closes the database. Transactions still running are left parked. Waits up to a minute for
+     * the clock thread, an interrupted caller stops waiting and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        clock.shutdownNow();
+        try {
+            clock.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        database.close();
+    }
+
+    /**
+     * Handle of a running transaction, used by its body on the thread of the transaction
+     */
+    final class Session {
+        private final String transactionName;
+        private final int transaction;
+        private final Thread thread;
+        // Variable of the operation the transaction waits for, -1 if none
+        private volatile int awaitedVariable;
+        private volatile boolean completed;
+        private volatile int value;
+        private volatile boolean aborted;
+        private volatile boolean committed;
+
+        private Session(String transactionName, int transaction) {
+            this.transactionName = transactionName;
+            this.transaction = transaction;
+            thread = Thread.currentThread();
+            awaitedVariable = -1;
+        }
+
+        /**
+         * Reads the variable, parking until the read is granted
+         * @throws TransactionAbortedException if the transaction was aborted
+         */
+        int read(int variable) {
+            expect(variable);
+            database.read(transaction, variable);
+            await();
+            return value;
+        }
+
+        /**
+         * Writes the variable, parking until the write is granted
+         * @throws TransactionAbortedException if the transaction was aborted
+         */
+        void write(int variable, int value) {
+            expect(variable);
+            database.write(transaction, variable, value);
+            await();
+        }
+
+        private void expect(int variable) {
+            if (aborted) {
+                throw new TransactionAbortedException(transactionName);
+            }
+            completed = false;
+            awaitedVariable = variable;
+        }
+
+        private void await() {
+            if (!completed && !aborted) {
+                parkedSessions.incrementAndGet();
+                try {
+                    while (!completed && !aborted) {
+                        LockSupport.park(this);
+                    }
+                } finally {
+                    parkedSessions.decrementAndGet();
+                }
+            }
+            awaitedVariable = -1;
+            if (!completed) {
+                throw new TransactionAbortedException(transactionName);
+            }
+        }
+
+        private void complete(int variable, int value) {
+            // A read-only transaction may be served again when another site recovers, only the awaited one counts
+            if (variable == awaitedVariable && !completed) {
+                this.value = value;
+                completed = true;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void abort() {
+            aborted = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wakes the sessions whose operations complete or whose transactions are aborted
+     */
+    private class SessionWakeup implements OperationListener {
+        @Override
+        public void readCompleted(int transactionId, int variable, int value) {
+            Session session = sessions.get(transactionId);
+            if (session != null) {
+                session.complete(variable, value);
+            }
+        }
+
+        @Override
+        public void writeCompleted(int transactionId, int variable) {
+            Session session = sessions.get(transactionId);
+            if (session != null) {
+                session.complete(variable, 0);
+            }
+        }
+
+        @Override
+        public void transactionAborted(int transactionId, AbortReason reason) {
+            Session session = sessions.get(transactionId);
+            if (session != null) {
+                session.abort();
+            }
+        }
+
+        @Override
+        public void transactionEnded(int transactionId, boolean committed) {
+            Session session = sessions.get(transactionId);
+            if (session != null) {
+                session.committed = committed;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package nyu.edu.adb.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Output sink which collects lines in a character buffer and appends them to its target in blocks
+ */
+class BufferedOutputSink implements OutputSink {
+    private final Appendable target;
+    private final int bufferSize;
+    private final StringBuilder buffer;
+
+    /**
+     * @param bufferSize number of characters after which the buffer is appended to the target
+     */
+    BufferedOutputSink(Appendable target, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.target = target;
+        this.bufferSize = bufferSize;
+        buffer = new StringBuilder(bufferSize);
+    }
+
+    @Override
+    public synchronized void println(String line) {
+        buffer.append(line).append('\n');
+        if (buffer.length() >= bufferSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (buffer.length() == 0) {
+            return;
+        }
+        try {
+            target.append(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,28 @@
+package nyu.edu.adb.project;
+
+/**
+ * Receives decoded commands. Transactions and variables are passed as handles, see {@link Database#transaction}
+ * and {@link Database#variable}.
+ */
+interface CommandHandler {
+    void begin(int transaction);
+
+    void beginRO(int transaction);
+
+    void read(int transaction, int variable);
+
+    void write(int transaction, int variable, int value);
+
+    void end(int transaction);
+
+    void fail(int siteId);
+
+    void recover(int siteId);
+
+    void dump();
+
+    /**
+     * Called for lines which are not commands, such as comments
+     */
+    void noOp();
+}
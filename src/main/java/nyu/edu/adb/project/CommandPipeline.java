@@ -0,0 +1,315 @@
+package nyu.edu.adb.project;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs parsing and execution of a script as two pipelined stages. A parser thread decodes commands into a bounded
+ * ring of pre-allocated command slots and the calling thread drains the ring into the executing handler, so reading
+ * and parsing overlap with lock management. There is exactly one producer and one consumer, and commands are
+ * executed one at a time in the order they were parsed, which keeps the output identical to the sequential path.
+ */
+class CommandPipeline {
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int YIELDS_BEFORE_PARK = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private static final byte BEGIN = 0;
+    private static final byte BEGIN_RO = 1;
+    private static final byte READ = 2;
+    private static final byte WRITE = 3;
+    private static final byte END = 4;
+    private static final byte FAIL = 5;
+    private static final byte RECOVER = 6;
+    private static final byte DUMP = 7;
+    private static final byte NO_OP = 8;
+    private static final byte END_OF_STREAM = 9;
+
+    /**
+     * Produces the commands of a script, e.g. by reading a file
+     */
+    interface CommandSource {
+        void produce(CommandHandler handler) throws Exception;
+    }
+
+    /**
+     * Time spent by each stage waiting on the other one
+     */
+    static class Stats {
+        private final long commands;
+        private final long parserStallNanos;
+        private final long executorStallNanos;
+        private final long elapsedNanos;
+
+        Stats(long commands, long parserStallNanos, long executorStallNanos, long elapsedNanos) {
+            this.commands = commands;
+            this.parserStallNanos = parserStallNanos;
+            this.executorStallNanos = executorStallNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long getCommands() {
+            return commands;
+        }
+
+        /**
+         * @return nanoseconds the parser waited because the ring was full
+         */
+        long getParserStallNanos() {
+            return parserStallNanos;
+        }
+
+        /**
+         * @return nanoseconds the executor waited because the ring was empty
+         */
+        long getExecutorStallNanos() {
+            return executorStallNanos;
+        }
+
+        long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return commands + " commands in " + elapsedNanos / 1_000_000 + " ms, parser stalled "
+                    + parserStallNanos / 1_000_000 + " ms, executor stalled " + executorStallNanos / 1_000_000 + " ms";
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final byte[] opcodes;
+    private final int[] firstArguments;
+    private final int[] secondArguments;
+    private final int[] thirdArguments;
+
+    private final AtomicLong published;
+    private final AtomicLong consumed;
+    private volatile boolean abandoned;
+    private Throwable parserFailure;
+
+    CommandPipeline() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of command slots in the ring, rounded up to a power of two
+     */
+    CommandPipeline(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int slots = 1;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        this.capacity = slots;
+        this.mask = slots - 1;
+        opcodes = new byte[slots];
+        firstArguments = new int[slots];
+        secondArguments = new int[slots];
+        thirdArguments = new int[slots];
+        published = new AtomicLong();
+        consumed = new AtomicLong();
+    }
+
+    /**
+     * Runs the source on a parser thread and executes its commands on the calling thread. Can only be called once.
+     * @param source produces the commands
+     * @param executor executes the commands
+     * @return how long each stage was stalled
+     * @throws Exception the first failure of either stage. Commands parsed before a parser failure are executed
+     * first, as they would be on the sequential path.
+     */
+    Stats run(CommandSource source, CommandHandler executor) throws Exception {
+        long startTime = System.nanoTime();
+        Producer producer = new Producer();
+        Thread parser = new Thread(() -> {
+            try {
+                source.produce(producer);
+            } catch (Throwable t) {
+                parserFailure = t;
+            }
+            try {
+                producer.publish(END_OF_STREAM, 0, 0, 0);
+            } catch (CancellationException e) {
+                // The executor failed and nobody is waiting for the end of the stream
+            }
+        }, "repcrec-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        long executorStallNanos;
+        try {
+            executorStallNanos = drain(executor);
+        } catch (Throwable t) {
+            abandoned = true;
+            parser.join();
+            throw t;
+        }
+        parser.join();
+
+        if (parserFailure instanceof Exception) {
+            throw (Exception) parserFailure;
+        } else if (parserFailure instanceof Error) {
+            throw (Error) parserFailure;
+        }
+        return new Stats(producer.commands, producer.stallNanos, executorStallNanos,
+                System.nanoTime() - startTime);
+    }
+
+    /**
+     * Executes commands until the end of the stream and returns the time spent waiting for the parser
+     */
+    private long drain(CommandHandler executor) {
+        long stallNanos = 0;
+        long sequence = 0;
+        long available = 0;
+        while (true) {
+            if (sequence == available) {
+                available = published.get();
+                if (sequence == available) {
+                    long stallStart = System.nanoTime();
+                    for (int idleCount = 0; sequence == (available = published.get()); idleCount++) {
+                        idle(idleCount);
+                    }
+                    stallNanos += System.nanoTime() - stallStart;
+                }
+            }
+            int index = (int) sequence & mask;
+            byte opcode = opcodes[index];
+            int first = firstArguments[index];
+            int second = secondArguments[index];
+            int third = thirdArguments[index];
+            consumed.lazySet(++sequence);
+
+            switch (opcode) {
+                case BEGIN:
+                    executor.begin(first);
+                    break;
+                case BEGIN_RO:
+                    executor.beginRO(first);
+                    break;
+                case READ:
+                    executor.read(first, second);
+                    break;
+                case WRITE:
+                    executor.write(first, second, third);
+                    break;
+                case END:
+                    executor.end(first);
+                    break;
+                case FAIL:
+                    executor.fail(first);
+                    break;
+                case RECOVER:
+                    executor.recover(first);
+                    break;
+                case DUMP:
+                    executor.dump();
+                    break;
+                case NO_OP:
+                    executor.noOp();
+                    break;
+                case END_OF_STREAM:
+                    return stallNanos;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + opcode);
+            }
+        }
+    }
+
+    private static void idle(int idleCount) {
+        if (idleCount < SPINS_BEFORE_YIELD) {
+            return;
+        }
+        if (idleCount < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * The parser side of the ring. Every command is copied into the next free slot.
+     */
+    private class Producer implements CommandHandler {
+        private long sequence;
+        private long consumedBound;
+        private long commands;
+        private long stallNanos;
+
+        private void publish(byte opcode, int first, int second, int third) {
+            if (sequence - consumedBound == capacity) {
+                consumedBound = consumed.get();
+                if (sequence - consumedBound == capacity) {
+                    long stallStart = System.nanoTime();
+                    for (int idleCount = 0; sequence - (consumedBound = consumed.get()) == capacity; idleCount++) {
+                        if (abandoned) {
+                            throw new CancellationException("executor stopped");
+                        }
+                        idle(idleCount);
+                    }
+                    stallNanos += System.nanoTime() - stallStart;
+                }
+            }
+            int index = (int) sequence & mask;
+            opcodes[index] = opcode;
+            firstArguments[index] = first;
+            secondArguments[index] = second;
+            thirdArguments[index] = third;
+            published.lazySet(++sequence);
+            if (opcode != END_OF_STREAM) {
+                commands++;
+            }
+        }
+
+        @Override
+        public void begin(int transaction) {
+            publish(BEGIN, transaction, 0, 0);
+        }
+
+        @Override
+        public void beginRO(int transaction) {
+            publish(BEGIN_RO, transaction, 0, 0);
+        }
+
+        @Override
+        public void read(int transaction, int variable) {
+            publish(READ, transaction, variable, 0);
+        }
+
+        @Override
+        public void write(int transaction, int variable, int value) {
+            publish(WRITE, transaction, variable, value);
+        }
+
+        @Override
+        public void end(int transaction) {
+            publish(END, transaction, 0, 0);
+        }
+
+        @Override
+        public void fail(int siteId) {
+            publish(FAIL, siteId, 0, 0);
+        }
+
+        @Override
+        public void recover(int siteId) {
+            publish(RECOVER, siteId, 0, 0);
+        }
+
+        @Override
+        public void dump() {
+            publish(DUMP, 0, 0, 0);
+        }
+
+        @Override
+        public void noOp() {
+            publish(NO_OP, 0, 0, 0);
+        }
+    }
+}
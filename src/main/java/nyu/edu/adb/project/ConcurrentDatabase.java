@@ -0,0 +1,254 @@
+package nyu.edu.adb.project;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe front of a {@link Database}, for clients which run their transactions on several threads. A read or
+ * write whose locks can be granted right away takes the engine lock shared and the stripe of its variable, so
+ * operations of different transactions on variables of different stripes run in parallel. Every other operation,
+ * including begin and end, takes the engine lock exclusively and runs exactly as on a single thread, with deadlock
+ * handling and version collection.
+ * <p>
+ * Lock headers, wait queues, the waits-for graph and the site status only change under the exclusive engine lock or,
+ * for the lock headers of one variable, under its stripe, so the schedules are those of strict two-phase locking with
+ * available copies. Operations served on the fast path do not move the clock. A transaction must not be used by two
+ * threads at the same time.
+ */
+class ConcurrentDatabase implements CommandHandler, AutoCloseable {
+    private static final int STRIPES = 64;
+
+    private final Database database;
+    private final Lock sharedEngineLock;
+    private final Lock exclusiveEngineLock;
+    private final Object[] stripes;
+
+    ConcurrentDatabase(DatabaseConfig config) {
+        this(config, OutputSink.console());
+    }
+
+    /**
+     * @param output sink of the output of the database, which is called by several threads at a time
+     */
+    ConcurrentDatabase(DatabaseConfig config, OutputSink output) {
+        database = new Database(config, output);
+        // Fast paths of different stripes change the lock table at the same time, so it must not be resized by them
+        database.preallocateLockHeaders();
+        ReentrantReadWriteLock engineLock = new ReentrantReadWriteLock();
+        sharedEngineLock = engineLock.readLock();
+        exclusiveEngineLock = engineLock.writeLock();
+        stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * @see Database#transaction(String)
+     */
+    public int transaction(String transactionName) {
+        exclusiveEngineLock.lock();
+        try {
+            return database.transaction(transactionName);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    /**
+     * @see Database#variable(String)
+     */
+    public int variable(String variableName) {
+        return database.variable(variableName);
+    }
+
+    @Override
+    public void begin(int transaction) {
+        exclusiveEngineLock.lock();
+        try {
+            database.begin(transaction);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void beginRO(int transaction) {
+        exclusiveEngineLock.lock();
+        try {
+            database.beginRO(transaction);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void read(int transaction, int variable) {
+        sharedEngineLock.lock();
+        try {
+            synchronized (stripeOf(variable)) {
+                if (database.tryRead(transaction, variable)) {
+                    return;
+                }
+            }
+        } finally {
+            sharedEngineLock.unlock();
+        }
+        exclusiveEngineLock.lock();
+        try {
+            database.read(transaction, variable);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(int transaction, int variable, int value) {
+        sharedEngineLock.lock();
+        try {
+            synchronized (stripeOf(variable)) {
+                if (database.tryWrite(transaction, variable, value)) {
+                    return;
+                }
+            }
+        } finally {
+            sharedEngineLock.unlock();
+        }
+        exclusiveEngineLock.lock();
+        try {
+            database.write(transaction, variable, value);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void end(int transaction) {
+        exclusiveEngineLock.lock();
+        try {
+            database.end(transaction);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void fail(int siteId) {
+        exclusiveEngineLock.lock();
+        try {
+            database.fail(siteId);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void recover(int siteId) {
+        exclusiveEngineLock.lock();
+        try {
+            database.recover(siteId);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void dump() {
+        exclusiveEngineLock.lock();
+        try {
+            database.dump();
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the clock, which also runs deadlock detection. Clients whose transaction waits call it instead of
+     * spinning.
+     */
+    @Override
+    public void noOp() {
+        exclusiveEngineLock.lock();
+        try {
+            database.noOp();
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    /**
+     * Aborts the transaction on request of its client
+     * @return false if the transaction was not live
+     */
+    boolean abort(int transaction) {
+        exclusiveEngineLock.lock();
+        try {
+            return database.transactionManager.abortByClient(transaction);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the listener notified of completed operations and ended transactions. It is called on the thread which
+     * runs the operation, for operations served on the fast path while it holds the stripe of the variable.
+     */
+    void setOperationListener(OperationListener operationListener) {
+        exclusiveEngineLock.lock();
+        try {
+            database.transactionManager.setOperationListener(operationListener);
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the transaction has begun and has neither committed nor aborted
+     */
+    boolean isActive(int transaction) {
+        sharedEngineLock.lock();
+        try {
+            return database.transactionManager.isActive(transaction);
+        } finally {
+            sharedEngineLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the transaction has an operation waiting for a lock
+     */
+    boolean isWaiting(int transaction) {
+        sharedEngineLock.lock();
+        try {
+            return database.transactionManager.isWaiting(transaction);
+        } finally {
+            sharedEngineLock.unlock();
+        }
+    }
+
+    /**
+     * @return number of read-write transactions aborted for the given reason
+     */
+    int getAbortCount(AbortReason reason) {
+        sharedEngineLock.lock();
+        try {
+            return database.transactionManager.getAbortCount(reason);
+        } finally {
+            sharedEngineLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        exclusiveEngineLock.lock();
+        try {
+            database.close();
+        } finally {
+            exclusiveEngineLock.unlock();
+        }
+    }
+
+    private Object stripeOf(int variable) {
+        return stripes[variable & (STRIPES - 1)];
+    }
+}
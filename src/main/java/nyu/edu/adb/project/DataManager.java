@@ -2,68 +2,99 @@ package nyu.edu.adb.project;
 
 import java.util.*;
 
+/**
+ * Storage of a site. The variables held by the site are given by a bitmap over the variable indexes and each of them
+ * gets a dense slot, its rank in that bitmap. Committed values and the stale flags are kept in arrays indexed by slot,
+ * so reads and writes are plain array accesses.
+ */
 class DataManager {
     private final LockTable lockTable;
-    private final Map<String, Integer> dataMap;
-    private final Map<String, Map<Long, Integer>> writeHistory;
-    private final Set<String> unsafeVariablesForReading;
+    private final long[] hostedVariables;
+    private final int[] slotBase;
+    private final int[] values;
+    private final long[] unsafeSlotsForReading;
+    private final VersionStore versions;
+    private int collectionCursor;
 
-    DataManager() {
+    /**
+     * @param hostedVariables bitmap in which bit v is set if the site holds variable xv
+     */
+    DataManager(long[] hostedVariables) {
         lockTable = new LockTable();
-        dataMap = new HashMap<>();
-        unsafeVariablesForReading = new HashSet<>();
-        writeHistory = new HashMap<>();
+        this.hostedVariables = hostedVariables.clone();
+        slotBase = new int[hostedVariables.length];
+        int numberOfSlots = 0;
+        for (int word = 0; word < hostedVariables.length; word++) {
+            slotBase[word] = numberOfSlots;
+            numberOfSlots += Long.bitCount(hostedVariables[word]);
+        }
+        values = new int[numberOfSlots];
+        unsafeSlotsForReading = new long[(numberOfSlots >>> 6) + 1];
+        versions = new VersionStore(numberOfSlots);
     }
 
     /**
      * Returns the last committed value of the given variable if available
      * @author Omkar
      */
-    public Integer read(String variableName) {
-        if (!dataMap.containsKey(variableName)) {
-            throw new RuntimeException("Site does not contain variable");
-        }
-        return dataMap.get(variableName);
+    public int read(int variable) {
+        return values[slotOf(variable)];
     }
 
     /**
-     * Returns the last committed value of the given variable when the requesting transaction was started
+     * Returns the value of the given variable committed at the given tick, the last commit before the requesting
+     * transaction was started. The site does not have that version if it was down when it was committed.
      * @author Omkar
      */
-    Optional<Integer> readForRO(String variableName, Long tickTime) {
-        if (!dataMap.containsKey(variableName)) {
-            throw new RuntimeException("Site does not contain variable");
-        }
-        Map<Long, Integer> variableHistory = writeHistory.get(variableName);
-        if (variableHistory.containsKey(tickTime)) {
-            return Optional.of(variableHistory.get(tickTime));
+    Optional<Integer> readForRO(int variable, long tickTime) {
+        int slot = slotOf(variable);
+        int version = versions.floor(slot, tickTime);
+        if (version != VersionStore.NO_VERSION && versions.getTick(slot, version) == tickTime) {
+            return Optional.of(versions.getValue(slot, version));
         }
         return Optional.empty();
     }
 
+    /**
+     * Returns the commit tick of the newest version of the given variable committed at or before the given tick
+     * @return commit tick of the version or VersionStore.NO_VERSION if the site has no such version
+     */
+    long getVersionTick(int variable, long tickTime) {
+        int slot = slotOf(variable);
+        int version = versions.floor(slot, tickTime);
+        return version == VersionStore.NO_VERSION ? VersionStore.NO_VERSION : versions.getTick(slot, version);
+    }
+
     /**
      * Writes the new value of the variable to the site
      * @author Omkar
      */
-    public void write(String variableName, int val, long tickTime) {
-        if (!dataMap.containsKey(variableName)) {
-            throw new RuntimeException("Site does not contain variable");
-        }
-        dataMap.put(variableName, val);
-        Map<Long, Integer> variableHistory = writeHistory.get(variableName);
-        variableHistory.put(tickTime, val);
+    public void write(int variable, int val, long tickTime) {
+        int slot = slotOf(variable);
+        values[slot] = val;
+        versions.append(slot, tickTime, val);
 
-        if (unsafeVariablesForReading.contains(variableName)) {
-            unsafeVariablesForReading.remove(variableName);
-        }
+        unsafeSlotsForReading[slot >>> 6] &= ~(1L << slot);
+    }
+
+    /**
+     * returns true if the variable is stored at this site
+     */
+    boolean hasVariable(int variable) {
+        int word = variable >>> 6;
+        return variable > 0 && word < hostedVariables.length && (hostedVariables[word] & (1L << variable)) != 0;
     }
 
     /**
      * returns true if a fresh copy of the variable is available at this site
      * @author Omkar
      */
-    boolean isVariableSafeForRead(String variableName) {
-        return !unsafeVariablesForReading.contains(variableName);
+    boolean isVariableSafeForRead(int variable) {
+        if (!hasVariable(variable)) {
+            return true;
+        }
+        int slot = slotOf(variable);
+        return (unsafeSlotsForReading[slot >>> 6] & (1L << slot)) == 0;
     }
 
     /**
@@ -71,63 +102,97 @@ class DataManager {
      * @author Omkar
      */
     void clearStaleSet() {
-        unsafeVariablesForReading.clear();
+        Arrays.fill(unsafeSlotsForReading, 0L);
     }
 
     /**
      * Adds variable to the set of staleState variables. Thus marking the variable as unsafe to read
      * @author Omkar
      */
-    void addVariableToStaleSet(String variableName) {
-        if (dataMap.containsKey(variableName)) {
-            unsafeVariablesForReading.add(variableName);
-        } else {
+    void addVariableToStaleSet(int variable) {
+        if (!hasVariable(variable)) {
             throw new RuntimeException("this variable is not present at this site");
         }
+        int slot = slotOf(variable);
+        unsafeSlotsForReading[slot >>> 6] |= 1L << slot;
     }
 
     /**
      * @author Omkar
      */
-    void initializeVar(String variableName, int val) {
-        dataMap.put(variableName, val);
+    void initializeVar(int variable, int val) {
+        int slot = slotOf(variable);
+        values[slot] = val;
+        versions.append(slot, 0, val);
+    }
 
-        Map<Long, Integer> variableHistory = new HashMap<>();
-        variableHistory.put(Long.valueOf(0), val);
+    /**
+     * Adds the lock headers of all variables of the site, so that locking never changes the layout of the lock table
+     */
+    void preallocateLockHeaders() {
+        for (int word = 0; word < hostedVariables.length; word++) {
+            for (long bits = hostedVariables[word]; bits != 0; bits &= bits - 1) {
+                lockTable.addVariable((word << 6) + Long.numberOfTrailingZeros(bits));
+            }
+        }
+    }
 
-        writeHistory.put(variableName, variableHistory);
+    /**
+     * Prunes the versions of up to maxSlots variables which no snapshot taken at or after the low-water mark can
+     * read. Every call continues with the variable after the last one pruned by the previous call.
+     * @return number of removed versions
+     */
+    int collectVersions(long lowWaterMark, int maxSlots) {
+        int numberOfSlots = values.length;
+        int reclaimed = 0;
+        for (int i = Math.min(maxSlots, numberOfSlots); i > 0; i--) {
+            reclaimed += versions.prune(collectionCursor, lowWaterMark);
+            collectionCursor = collectionCursor + 1 == numberOfSlots ? 0 : collectionCursor + 1;
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Returns the slot of the given variable, which is the number of variables held by the site with a smaller index
+     */
+    private int slotOf(int variable) {
+        if (!hasVariable(variable)) {
+            throw new RuntimeException("Site does not contain variable");
+        }
+        int word = variable >>> 6;
+        return slotBase[word] + Long.bitCount(hostedVariables[word] & ((1L << variable) - 1));
     }
 
     /**
      * Calls the lockTable to release the read lock on the given variable by the given transaction
      * @author Saumya
      */
-    boolean releaseReadLock(String variableName, String transactionName) {
-        return lockTable.releaseReadLock(variableName, transactionName);
+    boolean releaseReadLock(int variable, int transactionId) {
+        return lockTable.releaseReadLock(variable, transactionId);
     }
 
     /**
      * Calls the lockTable to release the write lock on the given variable
      * @author Saumya
      */
-    boolean releaseWriteLock(String variableName) {
-        return lockTable.releaseWriteLock(variableName);
+    boolean releaseWriteLock(int variable) {
+        return lockTable.releaseWriteLock(variable);
     }
 
     /**
      * Calls the lockTable to get the read lock on the given variable by the given transaction
      * @author Saumya
      */
-    boolean getReadLock(String variableName, String transactionId) {
-        return lockTable.addReadLock(variableName, transactionId);
+    boolean getReadLock(int variable, int transactionId) {
+        return lockTable.addReadLock(variable, transactionId);
     }
 
     /**
      * Calls the lockTable to get the write lock on the given variable by the given transaction
      * @author Saumya
      */
-    boolean getWriteLock(String variableName, String transactionId) {
-        return lockTable.addWriteLock(variableName, transactionId);
+    boolean getWriteLock(int variable, int transactionId) {
+        return lockTable.addWriteLock(variable, transactionId);
     }
 
     /**
@@ -139,42 +204,50 @@ class DataManager {
 
     /**
      * Retrieves and returns the current writeLockHolder information from the lockTable
+     * @return id of the write lock holder or LockTable.NO_TRANSACTION
      * @author Saumya
      */
-    Optional<String> getWriteLockHolder(String variableName) {
-        return lockTable.getWriteLockHolder(variableName);
+    int getWriteLockHolder(int variable) {
+        return lockTable.getWriteLockHolder(variable);
     }
 
     /**
-     * Retrieves and returns the current readLockHolder information from the lockTable
-     * @author Saumya
+     * @return number of transactions holding a read lock on the given variable
+     */
+    int getReadLockCount(int variable) {
+        return lockTable.getReadLockCount(variable);
+    }
+
+    /**
+     * Copies the ids of the read lock holders of the given variable from the lockTable into the given array
+     * @return index after the last copied id
      */
-    List<String> getReadLockHolders(String variableName) {
-        return lockTable.getReadLockHolders(variableName);
+    int copyReadLockHolders(int variable, int[] holders, int offset) {
+        return lockTable.copyReadLockHolders(variable, holders, offset);
     }
 
     /**
-     * Dumps the current state of the data on the site to stdout
+     * Dumps the current state of the data on the site to the given sink
      * @author Omkar
      */
-    void dumpSite(int id) {
-        StringBuffer sb = new StringBuffer();
-        sb.append("site " + id + " - ");
-        String[] variableList = new String[dataMap.size()];
-        dataMap.keySet().toArray(variableList);
-        Arrays.sort(variableList, Comparator.comparingInt((String a) -> Integer.parseInt(a.substring(1))));
-        for (String variableName : variableList) {
-            int val = dataMap.get(variableName);
-            sb.append(variableName + ":" + val + ", ");
+    void dumpSite(int id, OutputSink output) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("site ").append(id).append(" - ");
+        int slot = 0;
+        for (int word = 0; word < hostedVariables.length; word++) {
+            for (long bits = hostedVariables[word]; bits != 0; bits &= bits - 1) {
+                int variable = (word << 6) + Long.numberOfTrailingZeros(bits);
+                sb.append('x').append(variable).append(':').append(values[slot++]).append(", ");
+            }
         }
-        System.out.println(sb.toString());
+        output.println(sb.toString());
     }
 
     /**
      * Checks in the lockTable if the writeLock is available for the given variable by the given transaction
      * @author Saumya
      */
-    boolean isWriteLockAvailable(String variableName, String transactionId) {
-        return lockTable.isWriteLockAvailable(variableName, transactionId);
+    boolean isWriteLockAvailable(int variable, int transactionId) {
+        return lockTable.isWriteLockAvailable(variable, transactionId);
     }
 }
@@ -1,5 +1,6 @@
 package nyu.edu.adb.project;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -7,143 +8,281 @@ import java.util.logging.Logger;
 
 /**
  * This class is the public API of the main database system. The user of this database needs to call methods
- * of this class to interact with the database
+ * of this class to interact with the database. A database with background deadlock detection or site actors runs
+ * its threads until it is closed.
  */
-class Database {
+class Database implements CommandHandler, AutoCloseable {
     private long tickTime;
     private int cycleDetectionInterval = 1;
+    private final int versionCollectionInterval;
     TransactionManager transactionManager;
     private SiteManager siteManager;
     private WaitQueueManager waitQueueManager;
-    private final int NUMBER_OF_SITES = 10;
+    private final VersionCollector versionCollector;
+    private final NameTable transactionNames;
+    private final QueryParser queryParser;
+    private final OutputSink output;
     private final static Logger LOGGER =
             Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     /**
+     * Creates a database with the layout of the project specification
      * @author Saumya
      */
     Database() {
+        this(DatabaseConfig.defaults());
+    }
+
+    /**
+     * Creates a database with the given number of sites, variables and placement of the variables
+     * @param config startup configuration
+     */
+    Database(DatabaseConfig config) {
+        this(config, OutputSink.console());
+    }
+
+    /**
+     * Creates a database whose output goes to the given sink
+     * @param config startup configuration
+     * @param output sink of the values read, commits, aborts and dumps, flushed when the database is closed
+     */
+    Database(DatabaseConfig config, OutputSink output) {
         tickTime = 0;
+        this.output = output;
+        transactionNames = new NameTable();
+        queryParser = new QueryParser(transactionNames);
         waitQueueManager = new WaitQueueManager();
-        siteManager = new SiteManager(NUMBER_OF_SITES);
-        transactionManager = new TransactionManager(siteManager, waitQueueManager);
+        siteManager = new SiteManager(new Topology(config), config.getSiteExecution());
+        BackgroundDeadlockDetector backgroundDetector = null;
+        if (config.getDeadlockHandling() == DatabaseConfig.DeadlockHandling.BACKGROUND_DETECTION) {
+            backgroundDetector = new BackgroundDeadlockDetector(config.getMinDetectionIntervalMillis(),
+                    config.getMaxDetectionIntervalMillis());
+        }
+        transactionManager = new TransactionManager(siteManager, waitQueueManager, config, backgroundDetector,
+                output);
         siteManager.setTransactionManager(transactionManager);
+        versionCollector = new VersionCollector(siteManager, config.getVersionCollectionBudget());
+        versionCollectionInterval = config.getVersionCollectionInterval();
         initialize();
         LOGGER.setLevel(Level.WARNING);
+        if (backgroundDetector != null) {
+            backgroundDetector.start();
+        }
     }
 
     /**
-     * This is the parser method of the database. String type queries are parsed in this method and then
-     * appropriate operation is performed by the database
+     * This is the parser method of the database. String type queries are parsed and then passed on to the typed API
+     * of the database
      * @author Saumya
      */
     public void handleQuery(String query) throws Exception {
-        if (query==null) {
-            throw new NullPointerException("query is null");
-        }
-
-        if (tickTime % cycleDetectionInterval==0) {
-            transactionManager.runDeadLockDetection();
-        }
-        tickTime += 1;
-        String paramsString = getParams(query);
-        if (query.startsWith("beginRO(")) {
-            beginReadOnlyTransaction(paramsString);
-        } else if (query.startsWith("begin(")) {
-            beginReadWriteTransaction(paramsString);
-        } else if (query.startsWith("end")) {
-            endTransaction(paramsString);
-        } else if (query.startsWith("W(")) {
-            write(paramsString);
-        } else if (query.startsWith("R(")) {
-            read(paramsString);
-        }else if (query.equals("dump()")) {
-            siteManager.dump();
-        } else if (query.startsWith("fail(")) {
-            failSite(paramsString);
-        } else if (query.startsWith("recover(")) {
-            recoverSite(paramsString);
-        }
+        queryParser.parse(query, this);
     }
 
     /**
-     * @author Saumya
+     * Returns the handle of the transaction with the given name. Handles are stable for the lifetime of the
+     * database, so clients can look them up once and reuse them for every operation of the transaction.
+     * @param transactionName name of the transaction, e.g. T1
+     * @return handle to be passed to the typed operations
      */
-    private String getParams(String query) {
-        if(query.contains("(")) {
-            return query.substring(query.indexOf("(")+1,query.indexOf(")"));
-        }
-        return null;
+    public int transaction(String transactionName) {
+        return transactionNames.intern(transactionName);
     }
 
-    private void beginReadWriteTransaction(String paramsString) throws Exception {
-        transactionManager.createReadWriteTransaction(paramsString, tickTime);
+    /**
+     * Returns the handle of the variable with the given name
+     * @param variableName name of the variable, e.g. x7
+     * @return handle to be passed to the typed operations
+     */
+    public int variable(String variableName) {
+        return QueryParser.parseVariable(variableName);
     }
 
-    private void beginReadOnlyTransaction(String paramsString) throws Exception {
-        transactionManager.createReadOnlyTransaction(paramsString, tickTime);
+    /**
+     * Begins a read-write transaction
+     * @param transaction handle of the transaction
+     */
+    @Override
+    public void begin(int transaction) {
+        advanceClock();
+        transactionManager.createReadWriteTransaction(transaction, transactionNames.name(transaction), tickTime);
     }
 
-    private void endTransaction(String paramsString) {
-        transactionManager.endTransaction(paramsString, tickTime);
+    /**
+     * Begins a read-only transaction
+     * @param transaction handle of the transaction
+     */
+    @Override
+    public void beginRO(int transaction) {
+        advanceClock();
+        transactionManager.createReadOnlyTransaction(transaction, transactionNames.name(transaction), tickTime);
     }
 
     /**
-     * @author Saumya
+     * Reads the variable for the given transaction and prints its value if the read could be served right away.
+     * Otherwise the read waits and its value is printed once it is granted.
+     * @param transaction handle of the transaction
+     * @param variable handle of the variable
+     * @author Omkar
      */
-    private void write(String paramsString) {
-        String[] params = paramsString.split(",");
-        if (params.length == 3) {
-            transactionManager.write(params[0].trim(), params[1].trim(), Integer.parseInt(params[2].trim()));
+    @Override
+    public void read(int transaction, int variable) {
+        advanceClock();
+        siteManager.validateVariable(variable);
+        Optional<Integer> readValue = transactionManager.read(transaction, variable);
+        if(readValue.isPresent()) {
+            output.println("x" + variable + ": " + readValue.get());
         } else {
-            throw new IllegalArgumentException("write operation must have 3 arguments");
+            LOGGER.log(Level.INFO, "read failed for transaction {0}", transactionNames.name(transaction));
         }
     }
 
     /**
-     * @author Omkar
+     * Writes the value to the variable for the given transaction
+     * @param transaction handle of the transaction
+     * @param variable handle of the variable
+     * @param value new value of the variable
+     * @author Saumya
      */
-    private void read(String paramsString) {
-
-        String[] params = paramsString.split(",");
-        if (params.length == 2) {
-            String variableName = params[1].trim();
-            Optional<Integer> readValue = transactionManager.read( params[0].trim(), variableName);
-            if(readValue.isPresent()) {
-                System.out.println(params[1].trim() + ": " + readValue.get());
-            } else {
-                LOGGER.log(Level.INFO, "read failed for transaction " + params[0].trim());
-            }
-        } else {
-            throw new IllegalArgumentException("write operation must have 3 arguments");
-        }
+    @Override
+    public void write(int transaction, int variable, int value) {
+        advanceClock();
+        siteManager.validateVariable(variable);
+        transactionManager.write(transaction, variable, value);
+    }
+
+    /**
+     * Serves the read like {@link #read(int, int)} if it needs no waiting, without moving the clock
+     * @return true if the read was served, false if it has to go through {@link #read(int, int)}
+     */
+    boolean tryRead(int transaction, int variable) {
+        siteManager.validateVariable(variable);
+        Optional<Integer> readValue = transactionManager.tryReadWithoutWaiting(transaction, variable);
+        readValue.ifPresent(value -> output.println("x" + variable + ": " + value));
+        return readValue.isPresent();
+    }
+
+    /**
+     * Performs the write like {@link #write(int, int, int)} if it needs no waiting, without moving the clock
+     * @return true if the write was performed, false if it has to go through {@link #write(int, int, int)}
+     */
+    boolean tryWrite(int transaction, int variable, int value) {
+        siteManager.validateVariable(variable);
+        return transactionManager.tryWriteWithoutWaiting(transaction, variable, value);
+    }
+
+    /**
+     * Ends the given transaction, committing it if possible
+     * @param transaction handle of the transaction
+     */
+    @Override
+    public void end(int transaction) {
+        advanceClock();
+        transactionManager.endTransaction(transaction, transactionNames.name(transaction), tickTime);
     }
 
     /**
+     * Fails the given site
+     * @param siteId id of the site
      * @author Omkar
      */
-    private void recoverSite(String paramsString) {
-        String[] params = paramsString.split(",");
-        if(params.length == 1) {
-            int siteId = Integer.parseInt(params[0].trim());
-            siteManager.recoverSite(siteId);
-        } else {
-            throw new IllegalArgumentException("recover operation must have one argument");
-        }
+    @Override
+    public void fail(int siteId) {
+        advanceClock();
+        siteManager.failSite(siteId);
+        transactionManager.checkTransactionsForAbortionAfterSiteFailure(siteId);
     }
 
     /**
+     * Recovers the given site
+     * @param siteId id of the site
      * @author Omkar
      */
-    private void failSite(String paramsString) {
-        String[] params = paramsString.split(",");
-        if(params.length == 1) {
-            int siteId = Integer.parseInt(params[0].trim());
-            siteManager.failSite(siteId);
-            transactionManager.checkTransactionsForAbortionAfterSiteFailure(siteId);
-        } else {
-            throw new IllegalArgumentException("fail operation must have one argument");
+    @Override
+    public void recover(int siteId) {
+        advanceClock();
+        siteManager.recoverSite(siteId);
+    }
+
+    /**
+     * Prints the committed values of all variables at all sites
+     */
+    @Override
+    public void dump() {
+        advanceClock();
+        siteManager.dump(output);
+    }
+
+    /**
+     * Advances the clock without performing any operation, as happens for lines which are not commands
+     */
+    @Override
+    public void noOp() {
+        advanceClock();
+    }
+
+    /**
+     * Sets how many ticks the operations of the given transaction may wait for a lock before it is aborted, when
+     * deadlocks are handled with lock wait timeouts
+     * @param transaction handle of the transaction
+     * @param timeoutTicks positive number of ticks
+     */
+    public void setLockWaitTimeout(int transaction, int timeoutTicks) {
+        transactionManager.setLockWaitTimeout(transaction, timeoutTicks);
+    }
+
+    /**
+     * Adds the lock headers of all variables at all sites. Afterwards locking a variable changes only its own lock
+     * headers, which lets {@link ConcurrentDatabase} lock different variables from different threads. Without it
+     * the headers are added at the first lock of each variable.
+     */
+    void preallocateLockHeaders() {
+        siteManager.preallocateLockHeaders();
+    }
+
+    /**
+     * Stops the background deadlock detector and the site actors if there are any
+     */
+    @Override
+    public void close() {
+        transactionManager.close();
+        siteManager.close();
+        output.flush();
+    }
+
+    /**
+     * Writes the events kept by the flight recorder, oldest first. Nothing is written unless the database was
+     * configured with a flight recorder capacity.
+     */
+    void dumpFlightRecorder(Appendable out) throws IOException {
+        transactionManager.getFlightRecorder().dump(out, transactionNames::name);
+    }
+
+    NameTable getTransactionNames() {
+        return transactionNames;
+    }
+
+    /**
+     * @return collector of old versions, which keeps statistics of its passes
+     */
+    VersionCollector getVersionCollector() {
+        return versionCollector;
+    }
+
+    /**
+     * Runs the periodic deadlock detection and version collection and moves the clock one tick forward, which
+     * expires lock waits whose timeout has passed. Every operation takes one tick.
+     * @author Saumya
+     */
+    private void advanceClock() {
+        if (tickTime % cycleDetectionInterval==0) {
+            transactionManager.runDeadLockDetection();
         }
+        if (versionCollectionInterval > 0 && tickTime % versionCollectionInterval == 0) {
+            versionCollector.collect(transactionManager.getLowWaterMark(tickTime));
+        }
+        tickTime += 1;
+        transactionManager.advanceClock(tickTime);
     }
 
     /**
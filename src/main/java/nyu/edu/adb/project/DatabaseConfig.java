@@ -0,0 +1,430 @@
+package nyu.edu.adb.project;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Startup configuration of a database. The defaults describe the layout of the project specification: 10 sites,
+ * 20 variables, even variables replicated at all sites and odd variables at site 1 + index % 10.
+ * <p>
+ * A configuration is created with {@link #builder()} or read from a properties file with {@link #fromFile(Path)}.
+ */
+class DatabaseConfig {
+
+    /**
+     * Which variables are replicated
+     */
+    enum Replication {
+        EVEN, ALL, NONE
+    }
+
+    /**
+     * How deadlocks are handled. Detection searches the waits-for graph for cycles at every tick, background
+     * detection searches snapshots of it on a separate thread. Wait-die and wound-wait prevent deadlocks by aborting
+     * a transaction whenever a younger transaction would wait for an older one. Timeout keeps no graph at all and
+     * aborts a transaction whose operation waited for a lock longer than its lock wait timeout.
+     */
+    enum DeadlockHandling {
+        DETECTION, BACKGROUND_DETECTION, WAIT_DIE, WOUND_WAIT, TIMEOUT;
+
+        /**
+         * @return true if deadlocks are found by searching the waits-for graph
+         */
+        boolean usesWaitsForGraph() {
+            return this == DETECTION || this == BACKGROUND_DETECTION;
+        }
+    }
+
+    /**
+     * How the site manager reaches the sites. Direct calls run on the calling thread, actors give every site a thread
+     * and a mailbox of its own.
+     */
+    enum SiteExecution {
+        DIRECT, ACTORS
+    }
+
+    private static final String PLACEMENT_PREFIX = "placement.";
+
+    private final int numberOfSites;
+    private final int numberOfVariables;
+    private final Replication replication;
+    private final int replicationFactor;
+    private final PlacementPolicy placementPolicy;
+    private final int versionCollectionInterval;
+    private final int versionCollectionBudget;
+    private final DeadlockHandling deadlockHandling;
+    private final int minDetectionIntervalMillis;
+    private final int maxDetectionIntervalMillis;
+    private final VictimPolicy victimPolicy;
+    private final int lockWaitTimeoutTicks;
+    private final SiteExecution siteExecution;
+    private final int flightRecorderCapacity;
+
+    private DatabaseConfig(Builder builder) {
+        numberOfSites = builder.numberOfSites;
+        numberOfVariables = builder.numberOfVariables;
+        replication = builder.replication;
+        replicationFactor = builder.replicationFactor == 0 ? builder.numberOfSites : builder.replicationFactor;
+        placementPolicy = builder.placementPolicy;
+        versionCollectionInterval = builder.versionCollectionInterval;
+        versionCollectionBudget = builder.versionCollectionBudget;
+        deadlockHandling = builder.deadlockHandling;
+        minDetectionIntervalMillis = builder.minDetectionIntervalMillis;
+        maxDetectionIntervalMillis = builder.maxDetectionIntervalMillis;
+        victimPolicy = builder.victimPolicy;
+        lockWaitTimeoutTicks = builder.lockWaitTimeoutTicks;
+        siteExecution = builder.siteExecution;
+        flightRecorderCapacity = builder.flightRecorderCapacity;
+    }
+
+    static DatabaseConfig defaults() {
+        return builder().build();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads the configuration from a properties file. Recognised keys are sites, variables,
+     * replication (even, all or none), replicationFactor, placement (modulo, hash or range) and placement.xN
+     * (a comma separated list of site ids for variable xN), versionCollectionInterval, versionCollectionBudget and
+     * deadlockHandling (detection, background-detection, wait-die, wound-wait or timeout), minDetectionIntervalMillis,
+     * maxDetectionIntervalMillis, victimPolicy (youngest or cost), lockWaitTimeoutTicks, siteExecution (direct or
+     * actors) and flightRecorderCapacity. Missing keys keep their default value.
+     * @param file path of the properties file
+     */
+    static DatabaseConfig fromFile(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    static DatabaseConfig fromProperties(Properties properties) {
+        Builder builder = builder();
+        if (properties.containsKey("sites")) {
+            builder.sites(Integer.parseInt(properties.getProperty("sites").trim()));
+        }
+        if (properties.containsKey("variables")) {
+            builder.variables(Integer.parseInt(properties.getProperty("variables").trim()));
+        }
+        if (properties.containsKey("replication")) {
+            builder.replication(Replication.valueOf(
+                    properties.getProperty("replication").trim().toUpperCase(Locale.ROOT)));
+        }
+        if (properties.containsKey("replicationFactor")) {
+            builder.replicationFactor(Integer.parseInt(properties.getProperty("replicationFactor").trim()));
+        }
+        if (properties.containsKey("versionCollectionInterval")) {
+            builder.versionCollectionInterval(
+                    Integer.parseInt(properties.getProperty("versionCollectionInterval").trim()));
+        }
+        if (properties.containsKey("versionCollectionBudget")) {
+            builder.versionCollectionBudget(Integer.parseInt(properties.getProperty("versionCollectionBudget").trim()));
+        }
+        if (properties.containsKey("deadlockHandling")) {
+            builder.deadlockHandling(DeadlockHandling.valueOf(
+                    properties.getProperty("deadlockHandling").trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+        }
+        if (properties.containsKey("minDetectionIntervalMillis")) {
+            builder.minDetectionIntervalMillis(
+                    Integer.parseInt(properties.getProperty("minDetectionIntervalMillis").trim()));
+        }
+        if (properties.containsKey("maxDetectionIntervalMillis")) {
+            builder.maxDetectionIntervalMillis(
+                    Integer.parseInt(properties.getProperty("maxDetectionIntervalMillis").trim()));
+        }
+        if (properties.containsKey("lockWaitTimeoutTicks")) {
+            builder.lockWaitTimeoutTicks(Integer.parseInt(properties.getProperty("lockWaitTimeoutTicks").trim()));
+        }
+
+        if (properties.containsKey("siteExecution")) {
+            builder.siteExecution(SiteExecution.valueOf(
+                    properties.getProperty("siteExecution").trim().toUpperCase(Locale.ROOT)));
+        }
+        if (properties.containsKey("flightRecorderCapacity")) {
+            builder.flightRecorderCapacity(
+                    Integer.parseInt(properties.getProperty("flightRecorderCapacity").trim()));
+        }
+
+        String victimPolicy = properties.getProperty("victimPolicy", "youngest").trim();
+        if (victimPolicy.equals("cost")) {
+            builder.victimPolicy(VictimPolicy.costBased());
+        } else if (!victimPolicy.equals("youngest")) {
+            throw new IllegalArgumentException("Unknown victim policy " + victimPolicy);
+        }
+
+        PlacementPolicy placementPolicy = PlacementPolicy.modulo();
+        String placement = properties.getProperty("placement", "modulo").trim();
+        if (placement.equals("hash")) {
+            placementPolicy = PlacementPolicy.hash();
+        } else if (placement.equals("range")) {
+            placementPolicy = PlacementPolicy.range();
+        } else if (!placement.equals("modulo")) {
+            throw new IllegalArgumentException("Unknown placement " + placement);
+        }
+
+        Map<Integer, int[]> explicitSites = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PLACEMENT_PREFIX)) {
+                int variable = QueryParser.parseVariable(key.substring(PLACEMENT_PREFIX.length()));
+                String[] siteIds = properties.getProperty(key).split(",");
+                int[] sites = new int[siteIds.length];
+                for (int i = 0; i < siteIds.length; i++) {
+                    sites[i] = Integer.parseInt(siteIds[i].trim());
+                }
+                explicitSites.put(variable, sites);
+            }
+        }
+        if (!explicitSites.isEmpty()) {
+            placementPolicy = PlacementPolicy.explicit(explicitSites, placementPolicy);
+        }
+        return builder.placement(placementPolicy).build();
+    }
+
+    int getNumberOfSites() {
+        return numberOfSites;
+    }
+
+    int getNumberOfVariables() {
+        return numberOfVariables;
+    }
+
+    Replication getReplication() {
+        return replication;
+    }
+
+    /**
+     * @return number of copies of a replicated variable
+     */
+    int getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    PlacementPolicy getPlacementPolicy() {
+        return placementPolicy;
+    }
+
+    /**
+     * @return number of ticks between two version collection passes, 0 if versions are never collected
+     */
+    int getVersionCollectionInterval() {
+        return versionCollectionInterval;
+    }
+
+    /**
+     * @return number of variables visited by a version collection pass
+     */
+    int getVersionCollectionBudget() {
+        return versionCollectionBudget;
+    }
+
+    DeadlockHandling getDeadlockHandling() {
+        return deadlockHandling;
+    }
+
+    /**
+     * @return shortest time between two searches of the background deadlock detector
+     */
+    int getMinDetectionIntervalMillis() {
+        return minDetectionIntervalMillis;
+    }
+
+    /**
+     * @return longest time between two searches of the background deadlock detector
+     */
+    int getMaxDetectionIntervalMillis() {
+        return maxDetectionIntervalMillis;
+    }
+
+    /**
+     * @return policy choosing the transactions aborted to break deadlocks
+     */
+    VictimPolicy getVictimPolicy() {
+        return victimPolicy;
+    }
+
+    /**
+     * @return number of ticks an operation may wait for a lock with timeouts, unless its transaction has its own
+     */
+    int getLockWaitTimeoutTicks() {
+        return lockWaitTimeoutTicks;
+    }
+
+    SiteExecution getSiteExecution() {
+        return siteExecution;
+    }
+
+    /**
+     * @return minimum number of events kept by the flight recorder, 0 if it is disabled
+     */
+    int getFlightRecorderCapacity() {
+        return flightRecorderCapacity;
+    }
+
+    /**
+     * @return number of copies to place for the variable with the given index
+     */
+    int getCopies(int variable) {
+        switch (replication) {
+            case ALL:
+                return replicationFactor;
+            case EVEN:
+                return variable % 2 == 0 ? replicationFactor : 1;
+            default:
+                return 1;
+        }
+    }
+
+    static class Builder {
+        private int numberOfSites = 10;
+        private int numberOfVariables = 20;
+        private Replication replication = Replication.EVEN;
+        private int replicationFactor = 0;
+        private PlacementPolicy placementPolicy = PlacementPolicy.modulo();
+        private int versionCollectionInterval = 16;
+        private int versionCollectionBudget = 4096;
+        private DeadlockHandling deadlockHandling = DeadlockHandling.DETECTION;
+        private int minDetectionIntervalMillis = 1;
+        private int maxDetectionIntervalMillis = 100;
+        private VictimPolicy victimPolicy = VictimPolicy.youngest();
+        private int lockWaitTimeoutTicks = 10;
+        private SiteExecution siteExecution = SiteExecution.DIRECT;
+        private int flightRecorderCapacity = 0;
+
+        Builder sites(int numberOfSites) {
+            this.numberOfSites = numberOfSites;
+            return this;
+        }
+
+        Builder variables(int numberOfVariables) {
+            this.numberOfVariables = numberOfVariables;
+            return this;
+        }
+
+        Builder replication(Replication replication) {
+            this.replication = replication;
+            return this;
+        }
+
+        /**
+         * @param replicationFactor number of copies of a replicated variable, by default all sites
+         */
+        Builder replicationFactor(int replicationFactor) {
+            this.replicationFactor = replicationFactor;
+            return this;
+        }
+
+        Builder placement(PlacementPolicy placementPolicy) {
+            this.placementPolicy = placementPolicy;
+            return this;
+        }
+
+        /**
+         * @param versionCollectionInterval number of ticks between two version collection passes, 0 to disable
+         */
+        Builder versionCollectionInterval(int versionCollectionInterval) {
+            this.versionCollectionInterval = versionCollectionInterval;
+            return this;
+        }
+
+        /**
+         * @param versionCollectionBudget number of variables visited by a version collection pass
+         */
+        Builder versionCollectionBudget(int versionCollectionBudget) {
+            this.versionCollectionBudget = versionCollectionBudget;
+            return this;
+        }
+
+        Builder deadlockHandling(DeadlockHandling deadlockHandling) {
+            this.deadlockHandling = deadlockHandling;
+            return this;
+        }
+
+        /**
+         * @param minDetectionIntervalMillis shortest time between two searches of the background deadlock detector,
+         * used while the waits-for graph changes quickly
+         */
+        Builder minDetectionIntervalMillis(int minDetectionIntervalMillis) {
+            this.minDetectionIntervalMillis = minDetectionIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param maxDetectionIntervalMillis longest time between two searches of the background deadlock detector,
+         * used while the waits-for graph does not change
+         */
+        Builder maxDetectionIntervalMillis(int maxDetectionIntervalMillis) {
+            this.maxDetectionIntervalMillis = maxDetectionIntervalMillis;
+            return this;
+        }
+
+        Builder victimPolicy(VictimPolicy victimPolicy) {
+            this.victimPolicy = victimPolicy;
+            return this;
+        }
+
+        /**
+         * @param lockWaitTimeoutTicks number of ticks an operation may wait for a lock before its transaction is
+         * aborted, used with timeouts
+         */
+        Builder lockWaitTimeoutTicks(int lockWaitTimeoutTicks) {
+            this.lockWaitTimeoutTicks = lockWaitTimeoutTicks;
+            return this;
+        }
+
+        Builder siteExecution(SiteExecution siteExecution) {
+            this.siteExecution = siteExecution;
+            return this;
+        }
+
+        /**
+         * @param flightRecorderCapacity number of latest events the flight recorder keeps, rounded up to a power of
+         * two, or 0 to disable it
+         */
+        Builder flightRecorderCapacity(int flightRecorderCapacity) {
+            this.flightRecorderCapacity = flightRecorderCapacity;
+            return this;
+        }
+
+        DatabaseConfig build() {
+            if (numberOfSites <= 0) {
+                throw new IllegalArgumentException("number of sites must be positive");
+            }
+            if (numberOfVariables <= 0) {
+                throw new IllegalArgumentException("number of variables must be positive");
+            }
+            if (replicationFactor < 0 || replicationFactor > numberOfSites) {
+                throw new IllegalArgumentException("replication factor must be between 1 and the number of sites");
+            }
+            if (versionCollectionInterval < 0 || versionCollectionBudget <= 0) {
+                throw new IllegalArgumentException("version collection interval must not be negative and its budget "
+                        + "must be positive");
+            }
+            if (minDetectionIntervalMillis <= 0 || maxDetectionIntervalMillis < minDetectionIntervalMillis) {
+                throw new IllegalArgumentException("detection intervals must be positive and the maximum must not be "
+                        + "below the minimum");
+            }
+            if (lockWaitTimeoutTicks <= 0) {
+                throw new IllegalArgumentException("lock wait timeout must be positive");
+            }
+            if (flightRecorderCapacity < 0) {
+                throw new IllegalArgumentException("flight recorder capacity must not be negative");
+            }
+            if (replication == null || placementPolicy == null || deadlockHandling == null || victimPolicy == null
+                    || siteExecution == null) {
+                throw new NullPointerException("replication, placement, deadlock handling, victim policy and site "
+                        + "execution must be set");
+            }
+            return new DatabaseConfig(this);
+        }
+    }
+}
@@ -2,32 +2,77 @@ package nyu.edu.adb.project;
 
 import java.util.*;
 
+/**
+ * The waits-for graph of the transactions. Transactions are dense ids, and every transaction has its outgoing and its
+ * incoming edges in primitive adjacency arrays, so removing a transaction only touches its own neighbors.
+ * <p>
+ * Cycles are searched incrementally. Every added edge is pending until the next search, which runs an iterative
+ * Tarjan strongly connected components pass over the transactions reachable from the targets of the pending edges.
+ * An edge closes a cycle exactly when both of its ends are in the same component.
+ * <p>
+ * The graph is only used by the executing thread. A background detector searches a {@link #snapshot()} instead.
+ */
 class DeadLockManager {
-    private Map<String, Set<String>> waitsForGraph;
-    private Set<String> vertices;
-    private List<List<String>> cycles;
+    private static final int[] NO_EDGES = new int[0];
+
+    private int[][] outgoing;
+    private int[] outDegree;
+    private int[][] incoming;
+    private int[] inDegree;
+    private List<List<Integer>> cycles;
+    // Edges not searched for cycles yet, packed as source << 32 | target
+    private long[] pendingEdges;
+    private int pendingEdgeCount;
+    // Number of edges added or removed so far
+    private long modificationCount;
+
+    // Tarjan state, indexed by transaction id. A transaction is visited in the current search if its epoch matches.
+    private int[] visitEpoch;
+    private int epoch;
+    private int nextIndex;
+    private int[] index;
+    private int[] lowLink;
+    private int[] component;
+    private boolean[] onStack;
+    private int[] stack;
+    private int[] callStack;
+    private int[] edgePosition;
+    // Path search state, a transaction has a parent in the current path search if its path epoch matches
+    private int[] pathEpoch;
+    private int pathSearch;
+    private int[] parent;
 
     DeadLockManager() {
-        waitsForGraph = new HashMap<>();
-        vertices = new HashSet<>();
+        this(16);
+    }
+
+    private DeadLockManager(int capacity) {
         cycles = new ArrayList<>();
+        pendingEdges = new long[16];
+        allocate(Math.max(1, capacity));
     }
 
     /**
      * Adds edge between two transaction nodes in the waits-for graph
-     * @param t1 Source transaction name
-     * @param t2 Target transaction name
+     * @param t1 Source transaction id
+     * @param t2 Target transaction id
      * @author Saumya
      */
-    void addEdge(String t1, String t2) {
-        if (t1.equals(t2)) {
+    void addEdge(int t1, int t2) {
+        if (t1 == t2) {
+            return;
+        }
+        ensureCapacity(Math.max(t1, t2) + 1);
+        if (indexOf(outgoing[t1], outDegree[t1], t2) >= 0) {
             return;
         }
-        Set<String> neighbors = waitsForGraph.getOrDefault(t1, new HashSet<>());
-        neighbors.add(t2);
-        waitsForGraph.put(t1, neighbors);
-        vertices.add(t1);
-        vertices.add(t2);
+        outgoing[t1] = append(outgoing[t1], outDegree[t1]++, t2);
+        incoming[t2] = append(incoming[t2], inDegree[t2]++, t1);
+        modificationCount++;
+        if (pendingEdgeCount == pendingEdges.length) {
+            pendingEdges = Arrays.copyOf(pendingEdges, pendingEdgeCount * 2);
+        }
+        pendingEdges[pendingEdgeCount++] = (long) t1 << 32 | t2;
     }
 
     /**
@@ -36,109 +81,309 @@ class DeadLockManager {
      * @param targets List of target transactions
      * @author Saumya
      */
-    void addMultipleEdges(String src, List<String> targets) {
-        for (String target: targets) {
+    void addMultipleEdges(int src, List<Integer> targets) {
+        for (Integer target: targets) {
             addEdge(src, target);
         }
     }
 
+    /**
+     * Adds directed edges from the source transaction to the first numberOfTargets transactions of the array
+     */
+    void addMultipleEdges(int src, int[] targets, int numberOfTargets) {
+        for (int i = 0; i < numberOfTargets; i++) {
+            addEdge(src, targets[i]);
+        }
+    }
+
     /**
      * Removes the edge from t1 to t2
-     * @param t1 Source transaction name
-     * @param t2 Target transaction name
+     * @param t1 Source transaction id
+     * @param t2 Target transaction id
      * @author Saumya
      */
-    void removeEdge(String t1, String t2) {
-        Set<String> neighbors = waitsForGraph.getOrDefault(t1, new HashSet<>());
-        neighbors.remove(t2);
-        waitsForGraph.put(t1, neighbors);
+    void removeEdge(int t1, int t2) {
+        if (t1 >= outDegree.length || t2 >= inDegree.length) {
+            return;
+        }
+        if (removeFrom(outgoing[t1], outDegree[t1], t2)) {
+            outDegree[t1]--;
+            removeFrom(incoming[t2], inDegree[t2], t1);
+            inDegree[t2]--;
+            modificationCount++;
+        }
+    }
+
+    /**
+     * Makes the given transactions the only targets of the outgoing edges of the source transaction. Edges which are
+     * already in the graph stay as they are and are not searched again.
+     * @param src Source transaction
+     * @param targets List of target transactions
+     */
+    void replaceOutgoingEdges(int src, Collection<Integer> targets) {
+        if (src < outDegree.length) {
+            for (int i = outDegree[src] - 1; i >= 0; i--) {
+                int target = outgoing[src][i];
+                if (!targets.contains(target)) {
+                    removeEdge(src, target);
+                }
+            }
+        }
+        for (int target : targets) {
+            addEdge(src, target);
+        }
     }
 
     /**
      * Removes a transaction from the waits-for graph
-     * @param t1 transaction name
+     * @param t1 transaction id
      * @author Saumya
      */
-    void removeNode(String t1) {
-        waitsForGraph.remove(t1);
-        for (Set<String> set: waitsForGraph.values()) {
-            set.remove(t1);
+    void removeNode(int t1) {
+        if (t1 >= outDegree.length) {
+            return;
+        }
+        for (int i = 0; i < outDegree[t1]; i++) {
+            int target = outgoing[t1][i];
+            removeFrom(incoming[target], inDegree[target], t1);
+            inDegree[target]--;
+        }
+        for (int i = 0; i < inDegree[t1]; i++) {
+            int source = incoming[t1][i];
+            removeFrom(outgoing[source], outDegree[source], t1);
+            outDegree[source]--;
         }
+        modificationCount += outDegree[t1] + inDegree[t1];
+        outDegree[t1] = 0;
+        inDegree[t1] = 0;
     }
 
     /**
-     * Runs the cycle detection algorithm on the waits for graph and returns a list of all the cycles
-     * @return list of cycles represented as list of transaction names
+     * @return true if the graph has an edge from t1 to t2
+     */
+    boolean hasEdge(int t1, int t2) {
+        return t1 < outDegree.length && indexOf(outgoing[t1], outDegree[t1], t2) >= 0;
+    }
+
+    /**
+     * @return number of edges added or removed since the graph was created
+     */
+    long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Copies the edges into a new graph which can be searched on another thread. All edges of the copy are pending,
+     * so its first {@link #getDeadLockCycles()} searches the whole graph.
+     * @return copy of the graph
+     */
+    DeadLockManager snapshot() {
+        DeadLockManager copy = new DeadLockManager(outDegree.length);
+        int edges = 0;
+        for (int node = 0; node < outDegree.length; node++) {
+            if (outDegree[node] > 0) {
+                copy.outgoing[node] = Arrays.copyOf(outgoing[node], outDegree[node]);
+                copy.outDegree[node] = outDegree[node];
+                edges += outDegree[node];
+            }
+            if (inDegree[node] > 0) {
+                copy.incoming[node] = Arrays.copyOf(incoming[node], inDegree[node]);
+                copy.inDegree[node] = inDegree[node];
+            }
+        }
+        copy.pendingEdges = new long[Math.max(16, edges)];
+        for (int node = 0; node < outDegree.length; node++) {
+            for (int i = 0; i < outDegree[node]; i++) {
+                copy.pendingEdges[copy.pendingEdgeCount++] = (long) node << 32 | outgoing[node][i];
+            }
+        }
+        copy.modificationCount = modificationCount;
+        return copy;
+    }
+
+    /**
+     * Looks for cycles created by the edges added since the last call and returns one cycle, the shortest, for every
+     * such edge that closes a cycle. Removing edges cannot create cycles, so every cycle of the graph goes through an
+     * edge that was added after the last call or that closed a cycle in the last call, and only the transactions
+     * reachable from those edges are searched. Edges which still close a cycle are searched again by the next call.
+     * @return list of cycles represented as list of transaction ids
      * @author Saumya
      */
-    List<List<String>> getDeadLockCycles() {
-        Set<String> whiteSet = new HashSet<>();
-        Set<String> graySet = new HashSet<>();
-        Set<String> blackSet = new HashSet<>();
-        Map<String, String> parentMap = new HashMap<>();
+    List<List<Integer>> getDeadLockCycles() {
         cycles.clear();
+        int remaining = 0;
+        for (int i = 0; i < pendingEdgeCount; i++) {
+            long edge = pendingEdges[i];
+            int source = (int) (edge >>> 32);
+            int target = (int) edge;
+            if (indexOf(outgoing[source], outDegree[source], target) >= 0) {
+                pendingEdges[remaining++] = edge;
+            }
+        }
+        pendingEdgeCount = remaining;
+        if (pendingEdgeCount == 0) {
+            return cycles;
+        }
 
-        for (String vertex : vertices) {
-            whiteSet.add(vertex);
+        epoch++;
+        nextIndex = 0;
+        for (int i = 0; i < pendingEdgeCount; i++) {
+            int target = (int) pendingEdges[i];
+            if (visitEpoch[target] != epoch) {
+                findComponents(target);
+            }
         }
 
-        while (whiteSet.size() > 0) {
-            String current = whiteSet.iterator().next();
-            parentMap.put(current, null);
-            dfs(current, whiteSet, graySet, blackSet, parentMap);
+        remaining = 0;
+        for (int i = 0; i < pendingEdgeCount; i++) {
+            long edge = pendingEdges[i];
+            int source = (int) (edge >>> 32);
+            int target = (int) edge;
+            if (visitEpoch[source] == epoch && component[source] == component[target]) {
+                cycles.add(findPath(target, source, component[target]));
+                pendingEdges[remaining++] = edge;
+            }
         }
+        pendingEdgeCount = remaining;
         return cycles;
     }
 
     /**
-     * DFS algorithm as part of the cycle detection algorithm
-     * @author Saumya
+     * Iterative Tarjan search from the given transaction. Every transaction reachable from it is visited and gets
+     * the id of its strongly connected component, the index of the component's root.
      */
-    private void dfs(String current, Set<String> whiteSet,
-                        Set<String> graySet, Set<String> blackSet, Map<String, String> parentMap ) {
-        //move current to gray set from white set and then explore it.
-        moveVertex(current, whiteSet, graySet);
-        for(String neighbor : waitsForGraph.getOrDefault(current, new HashSet<>())) {
-            //if in black set means already explored so continue.
-            if (blackSet.contains(neighbor)) {
+    private void findComponents(int start) {
+        int stackSize = 0;
+        int depth = 0;
+        visit(start, nextIndex++);
+        stack[stackSize++] = start;
+        callStack[depth++] = start;
+
+        while (depth > 0) {
+            int node = callStack[depth - 1];
+            if (edgePosition[node] < outDegree[node]) {
+                int next = outgoing[node][edgePosition[node]++];
+                if (visitEpoch[next] != epoch) {
+                    visit(next, nextIndex++);
+                    stack[stackSize++] = next;
+                    callStack[depth++] = next;
+                } else if (onStack[next]) {
+                    lowLink[node] = Math.min(lowLink[node], index[next]);
+                }
                 continue;
             }
-            //if in gray set then cycle found.
-            if (graySet.contains(neighbor)) {
-                traceCycle(neighbor, current, parentMap);
-                return;
+
+            depth--;
+            if (depth > 0) {
+                int caller = callStack[depth - 1];
+                lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+            }
+            if (lowLink[node] == index[node]) {
+                int member;
+                do {
+                    member = stack[--stackSize];
+                    onStack[member] = false;
+                    component[member] = index[node];
+                } while (member != node);
             }
-            parentMap.put(neighbor, current);
-            dfs(neighbor, whiteSet, graySet, blackSet, parentMap);
         }
-        //move vertex from gray set to black set when done exploring.
-        moveVertex(current, graySet, blackSet);
+    }
+
+    private void visit(int node, int nodeIndex) {
+        visitEpoch[node] = epoch;
+        index[node] = nodeIndex;
+        lowLink[node] = nodeIndex;
+        onStack[node] = true;
+        edgePosition[node] = 0;
     }
 
     /**
-     * Traces back the nodes in the cycle when the cycle is detected
-     * @author Saumya
+     * Breadth-first search for a shortest path between two transactions of the same strongly connected component
+     * @return the transactions on the path, from start to end
      */
-    private void traceCycle(String lastNode, String secondLastNode, Map<String, String> parentMap) {
-        List<String> cycle = new ArrayList<>();
-        cycle.add(lastNode);
-        String parent = secondLastNode;
-        while(true) {
-            if (cycle.contains(parent))
-                break;
-            cycle.add(parent);
-            parent = parentMap.get(parent);
+    private List<Integer> findPath(int start, int end, int pathComponent) {
+        // The Tarjan stacks are empty between searches, so the call stack serves as the queue
+        int[] frontier = callStack;
+        int head = 0;
+        int tail = 0;
+        pathSearch++;
+        pathEpoch[start] = pathSearch;
+        parent[start] = start;
+        frontier[tail++] = start;
+        while (pathEpoch[end] != pathSearch) {
+            int current = frontier[head++];
+            for (int i = 0; i < outDegree[current]; i++) {
+                int neighbor = outgoing[current][i];
+                if (pathEpoch[neighbor] != pathSearch && visitEpoch[neighbor] == epoch
+                        && component[neighbor] == pathComponent) {
+                    pathEpoch[neighbor] = pathSearch;
+                    parent[neighbor] = current;
+                    frontier[tail++] = neighbor;
+                }
+            }
+        }
+        List<Integer> path = new ArrayList<>();
+        for (int node = end; node != start; node = parent[node]) {
+            path.add(node);
+        }
+        path.add(start);
+        Collections.reverse(path);
+        return path;
+    }
+
+    private static int indexOf(int[] edges, int degree, int node) {
+        for (int i = 0; i < degree; i++) {
+            if (edges[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] append(int[] edges, int degree, int node) {
+        if (degree == edges.length) {
+            edges = Arrays.copyOf(edges, Math.max(4, degree * 2));
         }
-        cycles.add(cycle);
+        edges[degree] = node;
+        return edges;
     }
 
     /**
-     * A helper function for the cycle detection algorithm
-     * @author Saumya
+     * Removes the node from the edge list keeping the order of the remaining edges
+     * @return true if the node was in the list
      */
-    private void moveVertex(String vertex, Set<String> sourceSet,
-                            Set<String> destinationSet) {
-        sourceSet.remove(vertex);
-        destinationSet.add(vertex);
+    private static boolean removeFrom(int[] edges, int degree, int node) {
+        int position = indexOf(edges, degree, node);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(edges, position + 1, edges, position, degree - position - 1);
+        return true;
+    }
+
+    private void ensureCapacity(int numberOfTransactions) {
+        if (numberOfTransactions > outDegree.length) {
+            allocate(Math.max(numberOfTransactions, outDegree.length * 2));
+        }
+    }
+
+    private void allocate(int capacity) {
+        int oldCapacity = outDegree == null ? 0 : outDegree.length;
+        outgoing = outgoing == null ? new int[capacity][] : Arrays.copyOf(outgoing, capacity);
+        incoming = incoming == null ? new int[capacity][] : Arrays.copyOf(incoming, capacity);
+        Arrays.fill(outgoing, oldCapacity, capacity, NO_EDGES);
+        Arrays.fill(incoming, oldCapacity, capacity, NO_EDGES);
+        outDegree = outDegree == null ? new int[capacity] : Arrays.copyOf(outDegree, capacity);
+        inDegree = inDegree == null ? new int[capacity] : Arrays.copyOf(inDegree, capacity);
+        visitEpoch = visitEpoch == null ? new int[capacity] : Arrays.copyOf(visitEpoch, capacity);
+        index = new int[capacity];
+        lowLink = new int[capacity];
+        component = new int[capacity];
+        onStack = new boolean[capacity];
+        stack = new int[capacity];
+        callStack = new int[capacity];
+        edgePosition = new int[capacity];
+        pathEpoch = pathEpoch == null ? new int[capacity] : Arrays.copyOf(pathEpoch, capacity);
+        parent = new int[capacity];
     }
 }
@@ -1,13 +1,22 @@
 package nyu.edu.adb.project;
 
-import java.io.File;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Scanner;
 
 public class Driver {
     public static void main(String[] args) throws Exception {
+        boolean pipelined = false;
+        DatabaseConfig config = DatabaseConfig.defaults();
         for(String arg: args) {
-            executeFromFile(arg);
+            if (arg.equals("--pipelined")) {
+                pipelined = true;
+            } else if (arg.startsWith("--config=")) {
+                config = DatabaseConfig.fromFile(Paths.get(arg.substring("--config=".length())));
+            } else if (pipelined) {
+                System.err.println(arg + ": " + executeFromFilePipelined(arg, config));
+            } else {
+                executeFromFile(arg, config);
+            }
         }
     }
 
@@ -17,15 +26,70 @@ public class Driver {
      * @author Omkar
      */
     public static void executeFromFile(String filename) throws Exception {
-        Scanner sc = new Scanner(new File(filename));
-        Database database = new Database();
-        while(sc.hasNextLine()) {
-            String line = sc.nextLine();
-            database.handleQuery(line);
+        executeFromFile(filename, DatabaseConfig.defaults());
+    }
+
+    /**
+     * Executes the instructions from given file in a database with the given configuration
+     * @param filename name of the file
+     * @param config configuration of the database
+     */
+    static void executeFromFile(String filename, DatabaseConfig config) throws Exception {
+        try (Database database = new Database(config, OutputSink.binary(System.out))) {
+            new ScriptReader(database, database.getTransactionNames()).execute(Paths.get(filename));
         }
 //        database.dump();
     }
 
+    /**
+     * Executes the instructions from given file in a database, parsing the file on a separate thread while the
+     * database executes the instructions parsed so far. The output is the same as that of executeFromFile.
+     * @param filename name of the file
+     * @return time spent by the parser and the executor waiting on each other
+     */
+    public static CommandPipeline.Stats executeFromFilePipelined(String filename) throws Exception {
+        return executeFromFilePipelined(filename, DatabaseConfig.defaults());
+    }
+
+    /**
+     * Executes the instructions from given file in a database with the given configuration, parsing the file on a
+     * separate thread
+     * @param filename name of the file
+     * @param config configuration of the database
+     * @return time spent by the parser and the executor waiting on each other
+     */
+    static CommandPipeline.Stats executeFromFilePipelined(String filename, DatabaseConfig config) throws Exception {
+        try (Database database = new Database(config, OutputSink.binary(System.out))) {
+            return new CommandPipeline().run(handler ->
+                    new ScriptReader(handler, database.getTransactionNames()).execute(Paths.get(filename)), database);
+        }
+    }
+
+    /**
+     * Executes list of instructions in a new database, parsing them on a separate thread
+     * @param instructions The list to execute
+     * @return time spent by the parser and the executor waiting on each other
+     */
+    public static CommandPipeline.Stats executeFromListPipelined(List<String> instructions) throws Exception {
+        Database database = new Database();
+        return executeFromListPipelined(database, instructions);
+    }
+
+    /**
+     * Executes list of instructions in given database, parsing them on a separate thread
+     * @param instructions The list to execute
+     * @return time spent by the parser and the executor waiting on each other
+     */
+    public static CommandPipeline.Stats executeFromListPipelined(Database database, List<String> instructions)
+            throws Exception {
+        QueryParser queryParser = new QueryParser(database.getTransactionNames());
+        return new CommandPipeline().run(handler -> {
+            for (String s: instructions) {
+                queryParser.parse(s, handler);
+            }
+        }, database);
+    }
+
     /**
      * Executes list of instructions in a new database
      * @param instructions The list to execute
@@ -0,0 +1,119 @@
+package nyu.edu.adb.project;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Ring buffer of the latest lock grants, lock waits, aborts and commits of a database. An event is a few ints and a
+ * tick written into parallel arrays, so recording does not allocate, and a disabled recorder returns right away.
+ * Once the ring is full the oldest events are overwritten. The events are turned into text only when they are dumped.
+ * <p>
+ * Events may be recorded by several threads at a time, each writes the slot it claimed. A dump taken while events are
+ * recorded may show a slot half written, so the engine should be idle or locked while it is dumped.
+ */
+class FlightRecorder {
+    enum Event {
+        // detail: site of the lock
+        READ_LOCK,
+        // detail: number of sites locked
+        WRITE_LOCK,
+        // detail: ordinal of the operation type
+        WAIT,
+        // detail: ordinal of the abort reason
+        ABORT,
+        COMMIT
+    }
+
+    static final int NO_VARIABLE = 0;
+
+    private static final Event[] EVENTS = Event.values();
+    private static final Operation.OperationType[] OPERATION_TYPES = Operation.OperationType.values();
+    private static final AbortReason[] ABORT_REASONS = AbortReason.values();
+
+    private final boolean enabled;
+    private final int mask;
+    private final long[] ticks;
+    private final byte[] events;
+    private final int[] transactions;
+    private final int[] variables;
+    private final int[] details;
+    private final AtomicLong recorded;
+
+    /**
+     * @param minimumCapacity lower bound of the number of events kept, rounded up to a power of two, or 0 for a
+     * recorder which records nothing
+     */
+    FlightRecorder(int minimumCapacity) {
+        enabled = minimumCapacity > 0;
+        int capacity = enabled ? Integer.highestOneBit(Math.max(1, minimumCapacity - 1)) << 1 : 0;
+        mask = capacity - 1;
+        ticks = new long[capacity];
+        events = new byte[capacity];
+        transactions = new int[capacity];
+        variables = new int[capacity];
+        details = new int[capacity];
+        recorded = new AtomicLong();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param variable index of the variable or {@link #NO_VARIABLE}
+     * @param detail meaning depends on the event, see {@link Event}
+     */
+    void record(Event event, long tick, int transactionId, int variable, int detail) {
+        if (!enabled) {
+            return;
+        }
+        int slot = (int) (recorded.getAndIncrement() & mask);
+        ticks[slot] = tick;
+        events[slot] = (byte) event.ordinal();
+        transactions[slot] = transactionId;
+        variables[slot] = variable;
+        details[slot] = detail;
+    }
+
+    /**
+     * @return number of events recorded so far, including the overwritten ones
+     */
+    long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * Writes the events still in the ring, oldest first, one per line, e.g. "12 WAIT T3 x4 WRITE"
+     * @param transactionNames names of the transactions by id
+     */
+    void dump(Appendable out, IntFunction<String> transactionNames) throws IOException {
+        long end = recorded.get();
+        for (long position = Math.max(0, end - ticks.length); position < end; position++) {
+            int slot = (int) (position & mask);
+            Event event = EVENTS[events[slot]];
+            out.append(Long.toString(ticks[slot])).append(' ').append(event.name()).append(' ')
+                    .append(transactionNames.apply(transactions[slot]));
+            if (variables[slot] != NO_VARIABLE) {
+                out.append(" x").append(Integer.toString(variables[slot]));
+            }
+            switch (event) {
+                case READ_LOCK:
+                    out.append(" site ").append(Integer.toString(details[slot]));
+                    break;
+                case WRITE_LOCK:
+                    out.append(' ').append(Integer.toString(details[slot])).append(" sites");
+                    break;
+                case WAIT:
+                    out.append(' ').append(OPERATION_TYPES[details[slot]].name());
+                    break;
+                case ABORT:
+                    out.append(' ').append(ABORT_REASONS[details[slot]].getDescription());
+                    break;
+                default:
+                    break;
+            }
+            out.append('\n');
+        }
+    }
+}
@@ -1,183 +1,370 @@
 package nyu.edu.adb.project;
 
-import java.util.*;
+import java.util.Arrays;
 
+/**
+ * Lock table of a site. Every locked variable has a lock header in an open-addressed table keyed by the variable
+ * index. The header is spread over parallel arrays and holds the write lock holder, the number of read lock holders
+ * and up to {@value #INLINE_READERS} read lock holders inline. Headers with more readers spill them to a bitmap
+ * indexed by transaction id.
+ * <p>
+ * Headers are never removed, they are reset when their locks are released, and spill bitmaps are kept once
+ * allocated. Acquiring, releasing and querying locks therefore does not allocate once every variable has been locked
+ * and the largest transaction id has been seen.
+ */
 class LockTable {
-    private Map<String, String> writeLocks;
-    private Map<String, Set<String>> readLocks;
-    private HashMap<String, Integer> readLockCount;
+    static final int NO_TRANSACTION = -1;
+
+    private static final int EMPTY = 0;
+    private static final int INLINE_READERS = 4;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] variables;
+    private int[] writers;
+    private int[] readerCounts;
+    private int[] inlineReaders;
+    private boolean[] spilled;
+    private long[][] spilledReaders;
+    private int size;
+    private int mask;
 
     LockTable() {
-        writeLocks = new HashMap<>();
-        readLocks = new HashMap<>();
-        readLockCount = new HashMap<>();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the lock header of the given variable ahead of its first lock. Once every variable of the site has its
+     * header, locking never changes the layout of the table, so locks of different variables can be changed by
+     * different threads. Otherwise the header is added at the first lock.
+     * @param variable index of the variable
+     */
+    void addVariable(int variable) {
+        findOrInsert(variable);
     }
 
     /**
      * Returns the transactionId of the transaction holding the write lock on the given variable
-     * @param variableName name of the variable
-     * @return TransactionId as a String of the writeLock holder transaction
+     * @param variable index of the variable
+     * @return TransactionId of the writeLock holder transaction or NO_TRANSACTION
      * @author Saumya
      */
-    Optional<String> getWriteLockHolder(String variableName) {
-        if (writeLocks.containsKey(variableName)) {
-            return Optional.of(writeLocks.get(variableName));
+    int getWriteLockHolder(int variable) {
+        int slot = find(variable);
+        return slot < 0 ? NO_TRANSACTION : writers[slot];
+    }
+
+    /**
+     * @param variable index of the variable
+     * @return number of transactions holding a read lock on the given variable
+     */
+    int getReadLockCount(int variable) {
+        int slot = find(variable);
+        return slot < 0 ? 0 : readerCounts[slot];
+    }
+
+    /**
+     * Copies the ids of the read lock holders of the given variable into the given array
+     * @param variable index of the variable
+     * @param holders destination, with room for {@link #getReadLockCount(int)} ids after offset
+     * @param offset index of the first id in holders
+     * @return index after the last copied id
+     */
+    int copyReadLockHolders(int variable, int[] holders, int offset) {
+        int slot = find(variable);
+        if (slot < 0 || readerCounts[slot] == 0) {
+            return offset;
+        }
+        if (!spilled[slot]) {
+            System.arraycopy(inlineReaders, slot * INLINE_READERS, holders, offset, readerCounts[slot]);
+            return offset + readerCounts[slot];
+        }
+        long[] bitmap = spilledReaders[slot];
+        for (int word = 0; word < bitmap.length; word++) {
+            for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                holders[offset++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
         }
-        return Optional.empty();
+        return offset;
     }
 
     /**
-     * Returns the List of transactionId of the transaction holding the read lock on the given variable
-     * @param variableName name of the variable
-     * @return List of transactionIds (Strings) having the read lock
-     * @author Saumya
+     * Returns true if the given transaction holds a read lock on the given variable
+     * @param variable index of the variable
+     * @param transactionId id of the transaction
      */
-    List<String> getReadLockHolders(String variableName) {
-        List<String> readLockHolders = new ArrayList<>();
-        readLockHolders.addAll(readLocks.getOrDefault(variableName, new HashSet<>()));
-        return readLockHolders;
+    boolean isReadLockHolder(int variable, int transactionId) {
+        int slot = find(variable);
+        return slot >= 0 && hasReader(slot, transactionId);
     }
 
     /**
      * Returns true if the given transaction can acquire a write lock on the given variable
-     * @param variableName Name of the variable
+     * @param variable index of the variable
      * @param transactionId id of the transaction
      * @return true if the given transaction can acquire a write lock on the given variable
      * @author Saumya
      */
-    boolean isWriteLockAvailable(String variableName, String transactionId) {
+    boolean isWriteLockAvailable(int variable, int transactionId) {
+        int slot = find(variable);
+        return slot < 0 || isWriteLockAvailable(slot, transactionId, readerCounts[slot]);
+    }
+
+    private boolean isWriteLockAvailable(int slot, int transactionId, int readerCount) {
         // False if some other transaction is holding the write lock
-        if (writeLocks.containsKey(variableName)
-                && !writeLocks.get(variableName).equals(transactionId)) {
+        if (writers[slot] != NO_TRANSACTION && writers[slot] != transactionId) {
             return false;
         }
 
-        // Return false if some other transaction is holding a read lock
-        if (readLocks.containsKey(variableName)) {
-            Set<String> readLockHolders = readLocks.get(variableName);
-            for (String tr: readLockHolders) {
-                if (!tr.equals(transactionId)) {
-                    return false;
-                }
-            }
+        // Readers are distinct, so a single reader is the only case in which the given transaction can be the only one
+        if (readerCount == 0) {
+            return true;
         }
-
-        return true;
+        return readerCount == 1 && hasReader(slot, transactionId);
     }
 
     /**
      * Sets the writeLockHolder for the given variable as the given transactionId
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @param transactionId id of the transaction
      * @return Returns true if the writeLockHolder was successfully set as the given transactionId
      * @author Saumya
      */
-    boolean addWriteLock(String variableName, String transactionId) {
-
-        if (!isWriteLockAvailable(variableName, transactionId)) {
+    boolean addWriteLock(int variable, int transactionId) {
+        int slot = findOrInsert(variable);
+        if (!isWriteLockAvailable(slot, transactionId, readerCounts[slot])) {
             return false;
         }
 
         //remove the read lock if the current transaction is holding one in order to enforce promotion of locks
-        Set<String> readLockHolders = readLocks.getOrDefault(variableName, new HashSet<>());
-        if (readLockHolders.contains(transactionId)) {
-            readLockHolders.remove(transactionId);
-        }
-        writeLocks.put(variableName, transactionId);
+        removeReader(slot, transactionId);
+        writers[slot] = transactionId;
         return true;
     }
 
     /**
-     * Returns true if the given transaction can acquire a readlock on the given variable
-     * @param variableName name of the variable
+     * Adds the given transaction to the list of read lock holders of the given variable
+     * @param variable index of the variable
      * @param transactionId id of the transaction
-     * @return true if the given transaction can acquire a readlock on the given variable
+     * @return true if the given transaction was successfully added to the list of read lock holders
+     * of the given variable
      * @author Saumya
      */
-    private boolean isReadLockAvailable(String variableName, String transactionId) {
+    boolean addReadLock(int variable, int transactionId) {
+        int slot = findOrInsert(variable);
+        int writer = writers[slot];
         // Return false some other transaction has write lock
-        if (writeLocks.containsKey(variableName)
-                && !writeLocks.get(variableName).equals(transactionId)) {
-            return false;
+        if (writer != NO_TRANSACTION) {
+            return writer == transactionId;
         }
+        addReader(slot, transactionId);
         return true;
     }
 
     /**
-     * Adds the given transaction to the list of read lock holders of the given variable
-     * @param variableName name of the variable
-     * @param transactionId id of the transaction
-     * @return true if the given transaction was successfully added to the list of read lock holders
-     * of the given variable
+     * Removes the given variable from the set of writeLocked variables
+     * @param variable index of the variable
+     * @return True if the variable is successfully removed from the set of writeLocked variables.
      * @author Saumya
      */
-    boolean addReadLock(String variableName, String transactionId) {
-
-        if (!isReadLockAvailable(variableName, transactionId)) {
+    boolean releaseWriteLock(int variable) {
+        int slot = find(variable);
+        if (slot < 0 || writers[slot] == NO_TRANSACTION) {
             return false;
         }
+        writers[slot] = NO_TRANSACTION;
+        return true;
+    }
 
-        if (writeLocks.containsKey(variableName) && writeLocks.get(variableName).equals(transactionId)) {
-            return true;
-        }
-
-        // Add new transaction to the set of read lock holders
-        Set<String> readLockHolders = readLocks.getOrDefault(variableName, new HashSet<>());
-        readLockHolders.add(transactionId);
-        readLocks.put(variableName, readLockHolders);
-
-        if(readLockCount.containsKey(variableName)) {
-            readLockCount.put(variableName, readLockCount.get(variableName) + 1);
-        } else {
-            readLockCount.put(variableName, 1);
+    /**
+     * removes the given transactionId from the list of the readLockHolders of the given variable
+     * @param variable index of the variable
+     * @param transactionId id of the transaction
+     * @return true if the transaction name is removed from the list of readLock holders
+     * @author Saumya
+     */
+    boolean releaseReadLock(int variable, int transactionId) {
+        int slot = find(variable);
+        if (slot >= 0) {
+            removeReader(slot, transactionId);
         }
         return true;
     }
 
     /**
-     * Removes the given variable from the set of writeLocked variables
-     * @param variableName name of the variable
-     * @return True if the variable is successfully removed from the set of writeLocked variables.
+     * clears the lockTable data. A helper method to simulate loss of lock info when the site goes down.
      * @author Saumya
      */
-    boolean releaseWriteLock(String variableName) {
-        if (writeLocks.containsKey(variableName)) {
-            writeLocks.remove(variableName);
-            return true;
+    void clearLockTable() {
+        for (int slot = 0; slot < variables.length; slot++) {
+            if (variables[slot] == EMPTY) {
+                continue;
+            }
+            writers[slot] = NO_TRANSACTION;
+            if (spilled[slot]) {
+                Arrays.fill(spilledReaders[slot], 0L);
+                spilled[slot] = false;
+            }
+            readerCounts[slot] = 0;
+        }
+    }
+
+    private boolean hasReader(int slot, int transactionId) {
+        if (spilled[slot]) {
+            long[] bitmap = spilledReaders[slot];
+            int word = transactionId >>> 6;
+            return word < bitmap.length && (bitmap[word] & (1L << transactionId)) != 0;
+        }
+        int start = slot * INLINE_READERS;
+        for (int i = start, end = start + readerCounts[slot]; i < end; i++) {
+            if (inlineReaders[i] == transactionId) {
+                return true;
+            }
         }
         return false;
     }
 
+    private void addReader(int slot, int transactionId) {
+        if (hasReader(slot, transactionId)) {
+            return;
+        }
+        int count = readerCounts[slot];
+        if (!spilled[slot] && count < INLINE_READERS) {
+            inlineReaders[slot * INLINE_READERS + count] = transactionId;
+            readerCounts[slot] = count + 1;
+            return;
+        }
+        if (!spilled[slot]) {
+            spill(slot);
+        }
+        setSpilledBit(slot, transactionId);
+        readerCounts[slot] = count + 1;
+    }
+
+    private void removeReader(int slot, int transactionId) {
+        int count = readerCounts[slot];
+        if (count == 0) {
+            return;
+        }
+        if (spilled[slot]) {
+            long[] bitmap = spilledReaders[slot];
+            int word = transactionId >>> 6;
+            long bit = 1L << transactionId;
+            if (word < bitmap.length && (bitmap[word] & bit) != 0) {
+                bitmap[word] &= ~bit;
+                readerCounts[slot] = count - 1;
+                // The bitmap is empty again, so the next readers can go inline
+                if (count == 1) {
+                    spilled[slot] = false;
+                }
+            }
+            return;
+        }
+        int start = slot * INLINE_READERS;
+        for (int i = start, last = start + count - 1; i <= last; i++) {
+            if (inlineReaders[i] == transactionId) {
+                inlineReaders[i] = inlineReaders[last];
+                readerCounts[slot] = count - 1;
+                return;
+            }
+        }
+    }
+
     /**
-     * removes the given transactionId from the list of the readLockHolders of the given variable
-     * @param variableName name of the variable
-     * @param transactionName name of the transaction
-     * @return true if the transaction name is removed from the list of readLock holders
-     * @author Saumya
+     * Moves the inline readers of the given slot into its bitmap
      */
-    boolean releaseReadLock(String variableName, String transactionName) {
+    private void spill(int slot) {
+        if (spilledReaders[slot] == null) {
+            spilledReaders[slot] = new long[1];
+        }
+        spilled[slot] = true;
+        int start = slot * INLINE_READERS;
+        for (int i = start, end = start + readerCounts[slot]; i < end; i++) {
+            setSpilledBit(slot, inlineReaders[i]);
+        }
+    }
 
-        if (!readLocks.containsKey(variableName)) {
-            return true;
+    private void setSpilledBit(int slot, int transactionId) {
+        int word = transactionId >>> 6;
+        if (word >= spilledReaders[slot].length) {
+            spilledReaders[slot] = Arrays.copyOf(spilledReaders[slot],
+                    Math.max(word + 1, spilledReaders[slot].length * 2));
         }
-        readLocks.get(variableName).remove(transactionName);
+        spilledReaders[slot][word] |= 1L << transactionId;
+    }
 
-        int count = readLockCount.get(variableName);
-        if(count == 1) {
-            readLockCount.remove(variableName);
-        } else {
-            readLockCount.put(variableName, count - 1);
+    /**
+     * Returns the slot of the lock header of the given variable or -1 if it has none
+     */
+    private int find(int variable) {
+        for (int slot = hash(variable) & mask; variables[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (variables[slot] == variable) {
+                return slot;
+            }
         }
-        return true;
+        return -1;
     }
 
     /**
-     * clears the lockTable data. A helper method to simulate loss of lock info when the site goes down.
-     * @author Saumya
+     * Returns the slot of the lock header of the given variable, adding an empty header if it has none
      */
-    void clearLockTable() {
-        writeLocks.clear();
-        readLocks.clear();
-        readLockCount = new HashMap<>();
+    private int findOrInsert(int variable) {
+        int slot = hash(variable) & mask;
+        for (; variables[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (variables[slot] == variable) {
+                return slot;
+            }
+        }
+        if (2 * (size + 1) > variables.length) {
+            grow();
+            return findOrInsert(variable);
+        }
+        variables[slot] = variable;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldVariables = variables;
+        int[] oldWriters = writers;
+        int[] oldReaderCounts = readerCounts;
+        int[] oldInlineReaders = inlineReaders;
+        boolean[] oldSpilled = spilled;
+        long[][] oldSpilledReaders = spilledReaders;
+        allocate(oldVariables.length * 2);
+
+        for (int oldSlot = 0; oldSlot < oldVariables.length; oldSlot++) {
+            if (oldVariables[oldSlot] == EMPTY) {
+                continue;
+            }
+            int slot = hash(oldVariables[oldSlot]) & mask;
+            while (variables[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            variables[slot] = oldVariables[oldSlot];
+            writers[slot] = oldWriters[oldSlot];
+            readerCounts[slot] = oldReaderCounts[oldSlot];
+            System.arraycopy(oldInlineReaders, oldSlot * INLINE_READERS, inlineReaders, slot * INLINE_READERS,
+                    INLINE_READERS);
+            spilled[slot] = oldSpilled[oldSlot];
+            spilledReaders[slot] = oldSpilledReaders[oldSlot];
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        variables = new int[capacity];
+        writers = new int[capacity];
+        Arrays.fill(writers, NO_TRANSACTION);
+        readerCounts = new int[capacity];
+        inlineReaders = new int[capacity * INLINE_READERS];
+        spilled = new boolean[capacity];
+        spilledReaders = new long[capacity][];
+        size = 0;
+        mask = capacity - 1;
+    }
+
+    private static int hash(int variable) {
+        int hash = variable * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
     }
-}
\ No newline at end of file
+}
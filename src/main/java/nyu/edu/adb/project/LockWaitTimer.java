@@ -0,0 +1,69 @@
+package nyu.edu.adb.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timer wheel of the operations waiting for a lock with a deadline. An operation is kept in the slot of its
+ * deadline tick and every slot is visited when the clock reaches its tick, so scheduling and expiring take constant
+ * time per operation. Deadlines more than one turn of the wheel away stay in their slot until their turn comes.
+ * <p>
+ * Operations are not removed when they are granted or dequeued, the caller skips them when they expire.
+ */
+class LockWaitTimer {
+    private final List<List<Operation>> slots;
+    private final int mask;
+    // First tick whose slot has not been visited yet
+    private long nextTick;
+
+    /**
+     * @param minimumSlots lower bound of the number of slots, rounded up to a power of two
+     */
+    LockWaitTimer(int minimumSlots) {
+        int numberOfSlots = Integer.highestOneBit(Math.max(1, minimumSlots - 1)) << 1;
+        slots = new ArrayList<>(numberOfSlots);
+        for (int i = 0; i < numberOfSlots; i++) {
+            slots.add(new ArrayList<>());
+        }
+        mask = numberOfSlots - 1;
+    }
+
+    /**
+     * Adds the operation to the slot of its deadline. A deadline which has already passed expires at the next call
+     * of {@link #expire(long)}.
+     */
+    void schedule(Operation operation) {
+        long tick = Math.max(operation.deadline, nextTick);
+        slots.get((int) (tick & mask)).add(operation);
+    }
+
+    /**
+     * Visits the slots of all ticks up to the given one
+     * @param tickTime current tick
+     * @return operations whose deadline is at or before the current tick, in deadline order
+     */
+    List<Operation> expire(long tickTime) {
+        List<Operation> expired = new ArrayList<>();
+        for (; nextTick <= tickTime; nextTick++) {
+            List<Operation> slot = slots.get((int) (nextTick & mask));
+            int kept = 0;
+            for (int i = 0; i < slot.size(); i++) {
+                Operation operation = slot.get(i);
+                if (operation.deadline <= nextTick) {
+                    expired.add(operation);
+                } else {
+                    slot.set(kept++, operation);
+                }
+            }
+            slot.subList(kept, slot.size()).clear();
+        }
+        return expired;
+    }
+
+    /**
+     * @return number of slots of the wheel
+     */
+    int getNumberOfSlots() {
+        return slots.size();
+    }
+}
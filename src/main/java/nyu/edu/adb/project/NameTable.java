@@ -0,0 +1,159 @@
+package nyu.edu.adb.project;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns names (such as transaction names) into dense int ids. Ids are handed out in order of first appearance
+ * starting at 0, so they can be used directly as array indexes. The canonical String of every id is kept so that
+ * names only need to be materialized again for output.
+ * <p>
+ * A table may be filled by one thread while other threads read names of ids that were handed to them through a
+ * safe publication, which is how the pipelined driver shares it between its parser and executor.
+ */
+class NameTable {
+    private static final int NOT_FOUND = -1;
+
+    private volatile String[] names;
+    private int[] hashes;
+    private int[] slots;
+    private int size;
+
+    NameTable() {
+        names = new String[16];
+        hashes = new int[16];
+        slots = new int[32];
+        Arrays.fill(slots, NOT_FOUND);
+        size = 0;
+    }
+
+    /**
+     * Returns the id of the given name, assigning a new id if the name has not been seen before
+     * @param name the name to intern
+     * @return dense id of the name
+     */
+    int intern(String name) {
+        int hash = hash(name);
+        int id = find(name, hash);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        return add(name, hash);
+    }
+
+    /**
+     * Returns the id of the name stored as single-byte characters in the given buffer, assigning a new id if the name
+     * has not been seen before. A String is only created when the name is new.
+     * @param bytes buffer holding the name
+     * @param offset index of the first byte of the name
+     * @param length number of bytes in the name
+     * @return dense id of the name
+     */
+    int intern(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + (bytes[offset + i] & 0xff);
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(hash) & mask; slots[i] != NOT_FOUND; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (hashes[id] == hash && regionMatches(names[id], bytes, offset, length)) {
+                return id;
+            }
+        }
+        return add(new String(bytes, offset, length, StandardCharsets.ISO_8859_1), hash);
+    }
+
+    /**
+     * Returns the id of the given name without interning it
+     * @param name the name to look up
+     * @return id of the name or -1 if the name was never interned
+     */
+    int lookup(String name) {
+        return find(name, hash(name));
+    }
+
+    /**
+     * @param id id returned by {@link #intern(String)}
+     * @return the canonical name for the id
+     */
+    String name(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown id " + id);
+        }
+        return current[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int find(String name, int hash) {
+        int mask = slots.length - 1;
+        for (int i = mix(hash) & mask; slots[i] != NOT_FOUND; i = (i + 1) & mask) {
+            int id = slots[i];
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int add(String name, int hash) {
+        int id = size;
+        if (id == names.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            String[] grown = Arrays.copyOf(names, id * 2);
+            grown[id] = name;
+            names = grown;
+        } else {
+            names[id] = name;
+        }
+        hashes[id] = hash;
+        size++;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insertSlot(id);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, NOT_FOUND);
+        for (int id = 0; id < size; id++) {
+            insertSlot(id);
+        }
+    }
+
+    private void insertSlot(int id) {
+        int mask = slots.length - 1;
+        int i = mix(hashes[id]) & mask;
+        while (slots[i] != NOT_FOUND) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = id;
+    }
+
+    private static int hash(String name) {
+        return name.hashCode();
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionMatches(String name, byte[] bytes, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != (bytes[offset + i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,33 +1,45 @@
 package nyu.edu.adb.project;
 
 /**
- * This class is just a data structure to hold the information about read/write operations
+ * This class is just a data structure to hold the information about read/write operations. A waiting operation is
+ * linked into the wait queue of its variable and into the list of waiting operations of its transaction, the links
+ * are maintained by {@link WaitQueueManager}.
  * @author Saumya
  */
 class Operation {
     enum OperationType {
         READ, WRITE
     }
-    private final String transactionId;
+    private final int transactionId;
     private final OperationType operationType;
-    private final String variableName;
-    private final Integer value;
+    private final int variable;
+    private final int value;
 
-    Operation(String transactionId, OperationType operationType, String variableName) {
+    Operation previous;
+    Operation next;
+    Operation previousWrite;
+    Operation previousOfTransaction;
+    Operation nextOfTransaction;
+    Operation nextWrite;
+    long sequence;
+    // Tick at which the operation stops waiting and its transaction is aborted, with lock wait timeouts
+    long deadline;
+
+    Operation(int transactionId, OperationType operationType, int variable) {
         this.transactionId = transactionId;
         this.operationType = operationType;
-        this.variableName = variableName;
-        this.value = null;
+        this.variable = variable;
+        this.value = 0;
     }
 
-    Operation(String transactionId, OperationType operationType, String variableName, int value) {
+    Operation(int transactionId, OperationType operationType, int variable, int value) {
         this.transactionId = transactionId;
         this.operationType = operationType;
-        this.variableName = variableName;
+        this.variable = variable;
         this.value = value;
     }
 
-    String getTransactionId() {
+    int getTransactionId() {
         return transactionId;
     }
 
@@ -35,11 +47,14 @@ class Operation {
         return operationType;
     }
 
-    public String getVariableName() {
-        return variableName;
+    int getVariable() {
+        return variable;
     }
 
-    Integer getValue() {
+    /**
+     * @return the value to write, only meaningful for write operations
+     */
+    int getValue() {
         return value;
     }
 }
@@ -0,0 +1,35 @@
+package nyu.edu.adb.project;
+
+/**
+ * Notified by the transaction manager when operations of a transaction complete and when the transaction ends. The
+ * methods are called on the thread executing the engine, while it holds the engine, so they must not block.
+ */
+interface OperationListener {
+    OperationListener NONE = new OperationListener() {
+    };
+
+    /**
+     * A read of the transaction was served, right away or once it was granted
+     */
+    default void readCompleted(int transactionId, int variable, int value) {
+    }
+
+    /**
+     * A write of the transaction was performed, right away or once it was granted
+     */
+    default void writeCompleted(int transactionId, int variable) {
+    }
+
+    /**
+     * The transaction was aborted before its end, e.g. to break a deadlock or on request of its client
+     */
+    default void transactionAborted(int transactionId, AbortReason reason) {
+    }
+
+    /**
+     * The transaction was ended
+     * @param committed false if it was aborted at its end because a site it accessed failed
+     */
+    default void transactionEnded(int transactionId, boolean committed) {
+    }
+}
@@ -0,0 +1,55 @@
+package nyu.edu.adb.project;
+
+import java.io.OutputStream;
+
+/**
+ * Destination of the output of a database: values read, commits, aborts and dumps, one line at a time. Every database
+ * has its own sink, so the output of several databases in one process can be kept apart. Sinks are called by the
+ * threads running the database, which may be several at a time, so they must be thread-safe.
+ */
+interface OutputSink {
+    int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Writes a line, without its line separator
+     */
+    void println(String line);
+
+    /**
+     * Hands the buffered lines to the destination. The database flushes its sink when it is closed.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Prints every line to the current {@link System#out} right away
+     */
+    static OutputSink console() {
+        return line -> System.out.println(line);
+    }
+
+    /**
+     * Discards all output
+     */
+    static OutputSink none() {
+        return line -> {
+        };
+    }
+
+    /**
+     * Collects the lines in memory and appends them to the target when they fill the buffer or on a flush
+     * @param target destination, e.g. a StringBuilder or a Writer
+     */
+    static OutputSink buffered(Appendable target) {
+        return new BufferedOutputSink(target, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Encodes the lines as bytes into a buffer which is written to the stream when it is full or on a flush, so the
+     * stream is written in large blocks and its lock is rarely taken
+     * @param out destination, e.g. System.out or a file
+     */
+    static OutputSink binary(OutputStream out) {
+        return new BinaryOutputSink(out, DEFAULT_BUFFER_SIZE);
+    }
+}
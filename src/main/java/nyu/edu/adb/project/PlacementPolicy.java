@@ -0,0 +1,84 @@
+package nyu.edu.adb.project;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides which sites hold the copies of a variable
+ */
+interface PlacementPolicy {
+
+    /**
+     * Returns the ids of the sites holding the copies of the given variable. Reads try the sites in the returned
+     * order.
+     * @param variable index of the variable, starting at 1
+     * @param copies number of copies to place, between 1 and numberOfSites
+     * @param numberOfSites number of sites, which have ids 1 to numberOfSites
+     * @param numberOfVariables number of variables in the database
+     * @return distinct site ids
+     */
+    int[] sitesOf(int variable, int copies, int numberOfSites, int numberOfVariables);
+
+    /**
+     * Places the first copy at site 1 + variable % numberOfSites and the others on the following sites. This is the
+     * layout described in the project specification.
+     */
+    static PlacementPolicy modulo() {
+        return (variable, copies, numberOfSites, numberOfVariables) ->
+                consecutiveSites(variable % numberOfSites, copies, numberOfSites);
+    }
+
+    /**
+     * Places the first copy on a site chosen by hashing the variable and the others on the following sites
+     */
+    static PlacementPolicy hash() {
+        return (variable, copies, numberOfSites, numberOfVariables) -> {
+            int hash = variable * 0x9E3779B9;
+            hash ^= hash >>> 16;
+            return consecutiveSites(Math.floorMod(hash, numberOfSites), copies, numberOfSites);
+        };
+    }
+
+    /**
+     * Splits the variables into numberOfSites contiguous ranges and places the first copy of every variable in a
+     * range on the same site, the others on the following sites
+     */
+    static PlacementPolicy range() {
+        return (variable, copies, numberOfSites, numberOfVariables) -> {
+            int start = (int) ((long) (variable - 1) * numberOfSites / numberOfVariables);
+            return consecutiveSites(start, copies, numberOfSites);
+        };
+    }
+
+    /**
+     * Uses the given sites for the listed variables and falls back to the given policy for all other variables.
+     * The number of listed sites of a variable overrides the number of copies.
+     * @param sitesByVariable site ids by variable index
+     * @param fallback policy for variables which are not listed
+     */
+    static PlacementPolicy explicit(Map<Integer, int[]> sitesByVariable, PlacementPolicy fallback) {
+        Map<Integer, int[]> sites = new HashMap<>(sitesByVariable);
+        return (variable, copies, numberOfSites, numberOfVariables) -> {
+            int[] listedSites = sites.get(variable);
+            if (listedSites == null) {
+                return fallback.sitesOf(variable, copies, numberOfSites, numberOfVariables);
+            }
+            return listedSites.clone();
+        };
+    }
+
+    /**
+     * Returns copies site ids starting at site 1 + start and wrapping around after the last site. A variable placed
+     * at every site gets the sites in ascending order, whatever the start.
+     */
+    static int[] consecutiveSites(int start, int copies, int numberOfSites) {
+        if (copies == numberOfSites) {
+            start = 0;
+        }
+        int[] sites = new int[copies];
+        for (int i = 0; i < copies; i++) {
+            sites[i] = 1 + (start + i) % numberOfSites;
+        }
+        return sites;
+    }
+}
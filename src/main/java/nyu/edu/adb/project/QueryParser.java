@@ -0,0 +1,83 @@
+package nyu.edu.adb.project;
+
+/**
+ * Parses String type queries such as "W(T1, x2, 5)" and passes them on to a {@link CommandHandler}
+ */
+class QueryParser {
+    private final NameTable transactionNames;
+
+    QueryParser(NameTable transactionNames) {
+        this.transactionNames = transactionNames;
+    }
+
+    /**
+     * Parses the query and issues the matching command on the handler. Queries which are not commands are passed
+     * on as no-ops.
+     * @param query the query to parse
+     * @param handler receiver of the parsed command
+     * @author Saumya
+     */
+    void parse(String query, CommandHandler handler) {
+        if (query==null) {
+            throw new NullPointerException("query is null");
+        }
+
+        String paramsString = getParams(query);
+        if (query.startsWith("beginRO(")) {
+            handler.beginRO(transactionNames.intern(paramsString.trim()));
+        } else if (query.startsWith("begin(")) {
+            handler.begin(transactionNames.intern(paramsString.trim()));
+        } else if (query.startsWith("end")) {
+            handler.end(transactionNames.intern(paramsString.trim()));
+        } else if (query.startsWith("W(")) {
+            String[] params = splitParams(paramsString, 3, "write operation must have 3 arguments");
+            handler.write(transactionNames.intern(params[0]), parseVariable(params[1]),
+                    Integer.parseInt(params[2]));
+        } else if (query.startsWith("R(")) {
+            String[] params = splitParams(paramsString, 2, "read operation must have 2 arguments");
+            handler.read(transactionNames.intern(params[0]), parseVariable(params[1]));
+        } else if (query.equals("dump()")) {
+            handler.dump();
+        } else if (query.startsWith("fail(")) {
+            String[] params = splitParams(paramsString, 1, "fail operation must have one argument");
+            handler.fail(Integer.parseInt(params[0]));
+        } else if (query.startsWith("recover(")) {
+            String[] params = splitParams(paramsString, 1, "recover operation must have one argument");
+            handler.recover(Integer.parseInt(params[0]));
+        } else {
+            handler.noOp();
+        }
+    }
+
+    /**
+     * Returns the index of the variable with the given name, e.g. 7 for x7
+     * @param variableName name of the variable
+     */
+    static int parseVariable(String variableName) {
+        if (variableName.length() < 2 || variableName.charAt(0) != 'x') {
+            throw new IllegalArgumentException("Invalid variable name " + variableName);
+        }
+        return Integer.parseInt(variableName.substring(1));
+    }
+
+    /**
+     * @author Saumya
+     */
+    private String getParams(String query) {
+        if(query.contains("(")) {
+            return query.substring(query.indexOf("(")+1,query.indexOf(")"));
+        }
+        return null;
+    }
+
+    private String[] splitParams(String paramsString, int count, String errorMessage) {
+        String[] params = paramsString.split(",");
+        if (params.length != count) {
+            throw new IllegalArgumentException(errorMessage);
+        }
+        for (int i = 0; i < params.length; i++) {
+            params[i] = params[i].trim();
+        }
+        return params;
+    }
+}
@@ -1,33 +1,27 @@
 package nyu.edu.adb.project;
 
-import java.util.Map;
-
+/**
+ * A read-only transaction reads the snapshot of the database at its begin tick. The snapshot is not copied, the
+ * version of a variable it contains is looked up in the version history of the sites when the variable is read.
+ */
 class ReadOnlyTransaction extends Transaction {
-    private Map<String, Long> lastWriteTimeMap;
-    private String pendingReadVariable;
+    static final int NO_PENDING_READ = 0;
 
-    ReadOnlyTransaction(String id, long tickTime, Map<String, Long> lastWriteTimeMap) {
-        super(id, tickTime);
-        this.lastWriteTimeMap = lastWriteTimeMap;
-        pendingReadVariable = null;
-    }
+    private int pendingReadVariable;
 
+    ReadOnlyTransaction(int id, String name, long tickTime) {
+        super(id, name, tickTime);
+        pendingReadVariable = NO_PENDING_READ;
+    }
 
     /**
-     * Obtains the tick time of the last committed write for given variable
-     * @param variableName
-     * @return the tick time
-     * @author Omkar
+     * @return the variable this transaction is waiting to read or NO_PENDING_READ
      */
-    Long getVariableTickTIme(String variableName) {
-        return lastWriteTimeMap.get(variableName);
-    }
-
-    String getPendingReadVariable() {
+    int getPendingReadVariable() {
         return pendingReadVariable;
     }
 
-    void setPendingReadVariable(String pendingReadVariable) {
+    void setPendingReadVariable(int pendingReadVariable) {
         this.pendingReadVariable = pendingReadVariable;
     }
-}
\ No newline at end of file
+}
@@ -3,17 +3,26 @@ package nyu.edu.adb.project;
 import java.util.*;
 
 class ReadWriteTransaction extends Transaction {
-    private Map<String, Integer> readLocks;
-    private Map<String, List<Integer>> writeLocks;
-    private Set<Integer> sitesAccessed;
-    private Map<String, Integer> modifiedVariables;
+    private Map<Integer, Integer> readLocks;
+    private Map<Integer, int[]> writeLocks;
+    private BitSet sitesAccessed;
+    private Map<Integer, Integer> modifiedVariables;
     private boolean isAborted;
+    private final int restartCount;
 
-    ReadWriteTransaction(String name, long tickTime) {
-        super(name, tickTime);
-        readLocks = new HashMap<>();
-        writeLocks = new HashMap<>();
-        sitesAccessed = new HashSet<>();
+    ReadWriteTransaction(int id, String name, long tickTime) {
+        this(id, name, tickTime, 0);
+    }
+
+    /**
+     * @param restartCount number of times a transaction with the same name was aborted before
+     */
+    ReadWriteTransaction(int id, String name, long tickTime, int restartCount) {
+        super(id, name, tickTime);
+        this.restartCount = restartCount;
+        readLocks = new LinkedHashMap<>();
+        writeLocks = new LinkedHashMap<>();
+        sitesAccessed = new BitSet();
         modifiedVariables = new HashMap<>();
         isAborted = false;
     }
@@ -21,52 +30,67 @@ class ReadWriteTransaction extends Transaction {
 
     /**
      * Adds the given value to variable value map which stores all the transaction's writes
-     * @param variableName Name of the variable
+     * @param variable index of the variable
      * @param variableValue Value of the variable
      * @author Omkar
      */
-    void writeToVariable(String variableName, int variableValue) {
-        if (!writeLocks.containsKey(variableName)) {
+    void writeToVariable(int variable, int variableValue) {
+        if (!writeLocks.containsKey(variable)) {
             return;
 //            throw new Exception("Transaction " + getName() + " has not acquired the write lock for variable " + variableName);
         }
-        modifiedVariables.put(variableName, variableValue);
+        modifiedVariables.put(variable, variableValue);
     }
 
-    Map<String, Integer> getReadLocks() {
+    /**
+     * @return site id of the read lock by variable, in the order the locks were acquired
+     */
+    Map<Integer, Integer> getReadLocks() {
         return readLocks;
     }
 
     /**
      * Gets the site id where read lock for given variable is held
-     * @param variableName The name of the variable
+     * @param variable index of the variable
      * @return Site id
      * @author Omkar
      */
-    int getReadLockSiteId(String variableName) {
-        if(!readLocks.containsKey(variableName)) {
+    int getReadLockSiteId(int variable) {
+        Integer siteId = readLocks.get(variable);
+        if(siteId == null) {
             throw new RuntimeException("Read lock not acquired for this transaction");
         }
-        return readLocks.get(variableName);
+        return siteId;
     }
 
     /**
-     * gets the list of site ids where write lock for given variable is held
-     * @param variableName The name of the variable
-     * @return List of Site ids
+     * gets the site ids where write lock for given variable is held
+     * @param variable index of the variable
+     * @return Site ids
      * @author Omkar
      */
-    List<Integer> getWriteLockSiteId(String variableName) {
-        if(!writeLocks.containsKey(variableName)) {
+    int[] getWriteLockSiteIds(int variable) {
+        int[] siteIds = writeLocks.get(variable);
+        if(siteIds == null) {
             throw new RuntimeException("Write lock not acquired for this transaction");
         }
-        return writeLocks.get(variableName);
+        return siteIds;
     }
 
-    Map<String, List<Integer>>  getWriteLocks() {
+    /**
+     * @return site ids of the write locks by variable, in the order the locks were acquired
+     */
+    Map<Integer, int[]> getWriteLocks() {
         return writeLocks;
     }
 
+    /**
+     * @return number of times a transaction with the same name was aborted before this one began
+     */
+    int getRestartCount() {
+        return restartCount;
+    }
+
     public boolean isAborted() {
         return isAborted;
     }
@@ -75,74 +99,78 @@ class ReadWriteTransaction extends Transaction {
         isAborted = aborted;
     }
 
-    Map<String, Integer> getModifiedVariables() {
+    Map<Integer, Integer> getModifiedVariables() {
         return modifiedVariables;
     }
 
-    public Set<Integer> getSitesAccessed() {
-        return sitesAccessed;
+    /**
+     * @param siteId id of the site
+     * @return true if the transaction has read from or written to the site
+     */
+    boolean hasAccessedSite(int siteId) {
+        return sitesAccessed.get(siteId);
     }
 
 
     /**
      * Adds read lock for specific site
-     * @param variableName Name of the variable
+     * @param variable index of the variable
      * @param siteId Site id
      * @author Omkar
      */
-    void addReadLock(String variableName, Integer siteId) {
-        readLocks.put(variableName, siteId);
+    void addReadLock(int variable, int siteId) {
+        readLocks.put(variable, siteId);
         return;
     }
 
     /**
      * Adds write lock for given sites
-     * @param variableName Name of the variable
-     * @param siteIdList Site ids
+     * @param variable index of the variable
+     * @param siteIds Site ids
      * @author Omkar
      */
-    void addWriteLock(String variableName, List<Integer> siteIdList) {
-        writeLocks.put(variableName, siteIdList);
+    void addWriteLock(int variable, int[] siteIds) {
+        writeLocks.put(variable, siteIds);
         return;
     }
 
     /**
      * Adds given sites to list of accessed sites
-     * @param listOfSites
-     * @return true if sites were not already present in the list, false otherwise
+     * @param siteIds ids of the accessed sites
      * @author Omkar
      */
-    boolean addAccessedSites(List<Integer> listOfSites) {
-        return sitesAccessed.addAll(listOfSites);
+    void addAccessedSites(int[] siteIds) {
+        for (int siteId : siteIds) {
+            sitesAccessed.set(siteId);
+        }
     }
 
     /**
      * Adds given site to list of accessed sites
      * @param siteId Site Id of Site which was accessed
-     * @return true if site was not already present in the list, false otherwise
      * @author Omkar
      */
-    boolean addAccessedSite(int siteId) {
-        return sitesAccessed.add(siteId);
+    void addAccessedSite(int siteId) {
+        sitesAccessed.set(siteId);
     }
 
     /**
      * Checks if transaction has read lock on given variable
-     * @param variableName Name of variable
+     * @param variable index of the variable
      * @return true if transaction has read lock on given variable, false otherwise
      * @author Omkar
      */
-    boolean hasReadLock(String variableName) {
-        return readLocks.containsKey(variableName);
+    boolean hasReadLock(int variable) {
+        return readLocks.containsKey(variable);
     }
 
     /**
      * Checks if transaction has write lock on given variable
-     * @param variableName Name of variable
+     * @param variable index of the variable
      * @return true if transaction has write lock on given variable, false otherwise
      * @author Omkar
      */
-    boolean hasWriteLock(String variableName) {
-        return writeLocks.containsKey(variableName);
+    boolean hasWriteLock(int variable) {
+        return writeLocks.containsKey(variable);
     }
 }
@@ -0,0 +1,254 @@
+package nyu.edu.adb.project;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams a script of commands from a channel and decodes it directly from the bytes. The channel is read in large
+ * chunks into a reusable buffer and no String is created per line: transaction names are interned straight from the
+ * buffer and numbers are parsed in place. Lines are recognised the same way {@link Database#handleQuery} recognises
+ * them, and every line which is not a command (comments, blank lines) is reported as a no-op.
+ */
+class ScriptReader {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_FIELDS = 3;
+
+    private static final byte[] BEGIN_RO = ascii("beginRO(");
+    private static final byte[] BEGIN = ascii("begin(");
+    private static final byte[] END = ascii("end");
+    private static final byte[] WRITE = ascii("W(");
+    private static final byte[] READ = ascii("R(");
+    private static final byte[] DUMP = ascii("dump()");
+    private static final byte[] FAIL = ascii("fail(");
+    private static final byte[] RECOVER = ascii("recover(");
+
+    private final CommandHandler handler;
+    private final NameTable transactionNames;
+    private byte[] buffer;
+    private ByteBuffer view;
+    private final int[] fieldStart;
+    private final int[] fieldEnd;
+    private long lineNumber;
+
+    ScriptReader(CommandHandler handler, NameTable transactionNames) {
+        this(handler, transactionNames, DEFAULT_BUFFER_SIZE);
+    }
+
+    ScriptReader(CommandHandler handler, NameTable transactionNames, int bufferSize) {
+        this.handler = handler;
+        this.transactionNames = transactionNames;
+        this.buffer = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buffer);
+        this.fieldStart = new int[MAX_FIELDS];
+        this.fieldEnd = new int[MAX_FIELDS];
+    }
+
+    /**
+     * Executes all the commands of the given file
+     * @param file path of the script
+     */
+    void execute(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            execute(channel);
+        }
+    }
+
+    /**
+     * Executes all the commands read from the given channel until it is exhausted
+     * @param channel source of the script
+     */
+    void execute(ReadableByteChannel channel) throws IOException {
+        lineNumber = 0;
+        int filled = 0;
+        int lineStart = 0;
+        while (true) {
+            if (filled == buffer.length) {
+                if (lineStart > 0) {
+                    System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                    filled -= lineStart;
+                    lineStart = 0;
+                } else {
+                    // A single line fills the whole buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    view = ByteBuffer.wrap(buffer);
+                }
+            }
+            view.limit(buffer.length);
+            view.position(filled);
+            int read = channel.read(view);
+            if (read < 0) {
+                break;
+            }
+            int scanFrom = filled;
+            filled += read;
+            for (int i = scanFrom; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    executeLine(lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+        }
+        if (lineStart < filled) {
+            executeLine(lineStart, filled);
+        }
+    }
+
+    /**
+     * Decodes the line stored in buffer[start, end) and passes it on to the handler
+     */
+    private void executeLine(int start, int end) {
+        lineNumber++;
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if (startsWith(start, end, BEGIN_RO)) {
+            handler.beginRO(transaction(start, end, BEGIN_RO.length - 1));
+        } else if (startsWith(start, end, BEGIN)) {
+            handler.begin(transaction(start, end, BEGIN.length - 1));
+        } else if (startsWith(start, end, END)) {
+            handler.end(transaction(start, end, indexOf(start, end, (byte) '(')));
+        } else if (startsWith(start, end, WRITE)) {
+            splitParams(start, end, WRITE.length - 1, 3, "write operation must have 3 arguments");
+            handler.write(transactionNames.intern(buffer, fieldStart[0], fieldEnd[0] - fieldStart[0]),
+                    parseVariable(1), parseInt(fieldStart[2], fieldEnd[2]));
+        } else if (startsWith(start, end, READ)) {
+            splitParams(start, end, READ.length - 1, 2, "read operation must have 2 arguments");
+            handler.read(transactionNames.intern(buffer, fieldStart[0], fieldEnd[0] - fieldStart[0]),
+                    parseVariable(1));
+        } else if (end - start == DUMP.length && startsWith(start, end, DUMP)) {
+            handler.dump();
+        } else if (startsWith(start, end, FAIL)) {
+            splitParams(start, end, FAIL.length - 1, 1, "fail operation must have one argument");
+            handler.fail(parseInt(fieldStart[0], fieldEnd[0]));
+        } else if (startsWith(start, end, RECOVER)) {
+            splitParams(start, end, RECOVER.length - 1, 1, "recover operation must have one argument");
+            handler.recover(parseInt(fieldStart[0], fieldEnd[0]));
+        } else {
+            handler.noOp();
+        }
+    }
+
+    private int transaction(int start, int end, int open) {
+        splitParams(start, end, open, 1, "transaction name expected");
+        return transactionNames.intern(buffer, fieldStart[0], fieldEnd[0] - fieldStart[0]);
+    }
+
+    /**
+     * Splits the comma separated parameters between the parenthesis at index open and the next closing parenthesis
+     * into the trimmed fields fieldStart/fieldEnd
+     */
+    private void splitParams(int start, int end, int open, int expected, String errorMessage) {
+        if (open < 0 || buffer[start + open] != '(') {
+            throw malformed("missing '('");
+        }
+        int close = indexOf(start + open, end, (byte) ')');
+        if (close < 0) {
+            throw malformed("missing ')'");
+        }
+        close += start + open;
+        int count = 0;
+        int fieldFrom = start + open + 1;
+        for (int i = fieldFrom; i <= close; i++) {
+            if (i == close || buffer[i] == ',') {
+                if (count == expected) {
+                    throw new IllegalArgumentException(errorMessage);
+                }
+                int from = fieldFrom;
+                int to = i;
+                while (from < to && isSpace(buffer[from])) {
+                    from++;
+                }
+                while (to > from && isSpace(buffer[to - 1])) {
+                    to--;
+                }
+                fieldStart[count] = from;
+                fieldEnd[count] = to;
+                count++;
+                fieldFrom = i + 1;
+            }
+        }
+        if (count != expected) {
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
+    private int parseVariable(int field) {
+        int from = fieldStart[field];
+        if (fieldEnd[field] - from < 2 || buffer[from] != 'x') {
+            throw malformed("invalid variable name");
+        }
+        return parseInt(from + 1, fieldEnd[field]);
+    }
+
+    private int parseInt(int from, int to) {
+        boolean negative = false;
+        if (from < to && (buffer[from] == '-' || buffer[from] == '+')) {
+            negative = buffer[from] == '-';
+            from++;
+        }
+        if (from == to) {
+            throw malformed("number expected");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed("invalid number");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw malformed("number out of range");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw malformed("number out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns the offset of the given byte from start or -1 if it does not occur before end
+     */
+    private int indexOf(int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == b) {
+                return i - start;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed command at line " + lineNumber + ": " + reason);
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+}
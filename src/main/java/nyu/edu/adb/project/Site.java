@@ -11,74 +11,97 @@ public class Site {
 
     private final DataManager dataManager;
 
-    public Site(int id) {
+    /**
+     * @param id id of the site
+     * @param hostedVariables bitmap in which bit v is set if the site holds variable xv
+     */
+    public Site(int id, long[] hostedVariables) {
         this.id = id;
-        this.dataManager = new DataManager();
+        this.dataManager = new DataManager(hostedVariables);
     }
 
-    public Integer read(String variableName) {
-        return dataManager.read(variableName);
+    public int read(int variable) {
+        return dataManager.read(variable);
     }
 
-    Optional<Integer> readForRO(String variableName, Long tickTime) {
-        return dataManager.readForRO(variableName, tickTime);
+    Optional<Integer> readForRO(int variable, long tickTime) {
+        return dataManager.readForRO(variable, tickTime);
     }
 
-    public void write(String variableName, int val, long tickTime) {
-        dataManager.write(variableName, val, tickTime);
+    long getVersionTick(int variable, long tickTime) {
+        return dataManager.getVersionTick(variable, tickTime);
     }
 
-    boolean isVariableSafeForRead(String variableName) {
-        return dataManager.isVariableSafeForRead(variableName);
+    public void write(int variable, int val, long tickTime) {
+        dataManager.write(variable, val, tickTime);
+    }
+
+    boolean isVariableSafeForRead(int variable) {
+        return dataManager.isVariableSafeForRead(variable);
+    }
+
+    boolean hasVariable(int variable) {
+        return dataManager.hasVariable(variable);
     }
 
     void clearStaleSet() {
         dataManager.clearStaleSet();
     }
 
-    void addVariableToStaleSet(String variableName) {
-        dataManager.addVariableToStaleSet(variableName);
+    void addVariableToStaleSet(int variable) {
+        dataManager.addVariableToStaleSet(variable);
     }
 
-    void initializeVar(String variableName, int val) {
-        dataManager.initializeVar(variableName, val);
+    void initializeVar(int variable, int val) {
+        dataManager.initializeVar(variable, val);
     }
 
-    boolean releaseReadLock(String variableName, String transactionName) {
-        return dataManager.releaseReadLock(variableName, transactionName);
+    boolean releaseReadLock(int variable, int transactionId) {
+        return dataManager.releaseReadLock(variable, transactionId);
     }
 
-    boolean releaseWriteLock(String variableName) {
-        return dataManager.releaseWriteLock(variableName);
+    boolean releaseWriteLock(int variable) {
+        return dataManager.releaseWriteLock(variable);
     }
 
-    boolean getReadLock(String variableName, String transactionId) {
-        return dataManager.getReadLock(variableName, transactionId);
+    boolean getReadLock(int variable, int transactionId) {
+        return dataManager.getReadLock(variable, transactionId);
     }
 
-    boolean getWriteLock(String variableName, String transactionId) {
-        return dataManager.getWriteLock(variableName, transactionId);
+    boolean getWriteLock(int variable, int transactionId) {
+        return dataManager.getWriteLock(variable, transactionId);
     }
 
     void clearAllLocks() {
         dataManager.clearAllLocks();
     }
 
-    Optional<String> getWriteLockHolder(String variableName) {
-        return dataManager.getWriteLockHolder(variableName);
+    int getWriteLockHolder(int variable) {
+        return dataManager.getWriteLockHolder(variable);
+    }
+
+    int getReadLockCount(int variable) {
+        return dataManager.getReadLockCount(variable);
+    }
+
+    int copyReadLockHolders(int variable, int[] holders, int offset) {
+        return dataManager.copyReadLockHolders(variable, holders, offset);
+    }
 
+    void preallocateLockHeaders() {
+        dataManager.preallocateLockHeaders();
     }
 
-    List<String> getReadLockHolders(String variableName) {
-        return dataManager.getReadLockHolders(variableName);
+    int collectVersions(long lowWaterMark, int maxSlots) {
+        return dataManager.collectVersions(lowWaterMark, maxSlots);
     }
 
-    void dumpSite() {
-        dataManager.dumpSite(id);
+    void dumpSite(OutputSink output) {
+        dataManager.dumpSite(id, output);
     }
 
-    boolean isWriteLockAvailable(String variableName, String transactionId) {
-        return dataManager.isWriteLockAvailable(variableName, transactionId);
+    boolean isWriteLockAvailable(int variable, int transactionId) {
+        return dataManager.isWriteLockAvailable(variable, transactionId);
     }
 
 }
@@ -0,0 +1,71 @@
+package nyu.edu.adb.project;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the requests to one site on a thread of its own. Requests wait in the mailbox of the actor, the queue of a
+ * single-threaded executor, and are handled one at a time in the order they were sent, so the state of the site is
+ * only touched by its thread.
+ */
+class SiteActor {
+    private final Site site;
+    private final ExecutorService mailbox;
+
+    SiteActor(int siteId, Site site) {
+        this.site = site;
+        mailbox = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "repcrec-site-" + siteId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends a request which answers with a value
+     * @return reply, completed by the thread of the site
+     */
+    <T> CompletableFuture<T> send(Function<Site, T> request) {
+        return CompletableFuture.supplyAsync(() -> request.apply(site), mailbox);
+    }
+
+    /**
+     * Sends a request which only changes the site
+     * @return completed by the thread of the site once the request was handled
+     */
+    CompletableFuture<Void> tell(Consumer<Site> request) {
+        return CompletableFuture.runAsync(() -> request.accept(site), mailbox);
+    }
+
+    /**
+     * Waits for a reply. A request which failed rethrows its exception on the waiting thread.
+     */
+    static <T> T await(CompletableFuture<T> reply) {
+        try {
+            return reply.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Handles the requests already sent and stops the thread of the site, waiting up to a minute for it. An
+     * interrupted caller stops waiting and keeps its interrupt status.
+     */
+    void stop() {
+        mailbox.shutdown();
+        try {
+            mailbox.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
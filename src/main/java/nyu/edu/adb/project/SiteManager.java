@@ -1,30 +1,64 @@
 package nyu.edu.adb.project;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Tracks the status of the sites and routes the requests of the transaction manager to them. With site actors every
+ * site handles its requests on its own thread, and requests to the copies of a replicated variable are sent to all
+ * of them before any reply is awaited.
+ */
 class SiteManager {
     enum Status {
         UP, DOWN
     }
 
-    private Map<Integer, Site> siteMap;
-    private Map<String, List<Integer>> variableToSiteIdMap;
-    private Map<Integer, Status> siteStatusMap;
+    private Site[] sites;
+    // Actors of the sites by id, null if the sites are called directly
+    private final SiteActor[] actors;
+    private Status[] siteStatus;
     private final int NUMBER_OF_SITES;
-    private Set<String> replicatedVariables;
+    private final Topology topology;
     private TransactionManager transactionManager;
-    private HashMap<String, Long> lastWriteMap;
 
-    SiteManager(int NUMBER_OF_SITES) {
-        this.NUMBER_OF_SITES = NUMBER_OF_SITES;
-        siteMap = new HashMap<>();
-        variableToSiteIdMap = new HashMap<>();
-        siteStatusMap = new HashMap<>();
+    SiteManager(Topology topology) {
+        this(topology, DatabaseConfig.SiteExecution.DIRECT);
+    }
+
+    /**
+     * @param siteExecution whether the sites are called directly or run as actors
+     */
+    SiteManager(Topology topology, DatabaseConfig.SiteExecution siteExecution) {
+        this.topology = topology;
+        this.NUMBER_OF_SITES = topology.getNumberOfSites();
+        sites = new Site[NUMBER_OF_SITES + 1];
+        siteStatus = new Status[NUMBER_OF_SITES + 1];
+        long[][] hostedVariables = topology.getHostedVariableBitmaps();
+        for (int i = 1; i <= NUMBER_OF_SITES; i++) {
+            sites[i] = new Site(i, hostedVariables[i]);
+        }
+        if (siteExecution == DatabaseConfig.SiteExecution.ACTORS) {
+            actors = new SiteActor[NUMBER_OF_SITES + 1];
+            for (int i = 1; i <= NUMBER_OF_SITES; i++) {
+                actors[i] = new SiteActor(i, sites[i]);
+            }
+        } else {
+            actors = null;
+        }
+    }
+
+    /**
+     * Stops the threads of the site actors if there are any
+     */
+    void close() {
+        if (actors == null) {
+            return;
+        }
         for (int i = 1; i <= NUMBER_OF_SITES; i++) {
-            siteMap.put(i, new Site(i));
+            actors[i].stop();
         }
-        replicatedVariables = new HashSet<>();
-        lastWriteMap = new HashMap<>();
     }
 
     /**
@@ -32,9 +66,9 @@ class SiteManager {
      * @author Saumya
      */
     void failSite(int siteId) {
-        Site site = siteMap.get(siteId);
-        site.clearAllLocks();
-        siteStatusMap.put(siteId, Status.DOWN);
+        getSite(siteId);
+        tell(siteId, Site::clearAllLocks);
+        siteStatus[siteId] = Status.DOWN;
     }
 
     /**
@@ -42,15 +76,19 @@ class SiteManager {
      * @author Omkar
      */
     void recoverSite(int siteId) {
-        siteStatusMap.put(siteId, Status.UP);
-        Site site = siteMap.get(siteId);
-        site.clearAllLocks();
-        site.clearStaleSet();
-        for (String variableName : variableToSiteIdMap.keySet()) {
-            if (replicatedVariables.contains(variableName)) {
-                site.addVariableToStaleSet(variableName);
+        getSite(siteId);
+        siteStatus[siteId] = Status.UP;
+        tell(siteId, site -> {
+            site.clearAllLocks();
+            site.clearStaleSet();
+            for (int variable = 1; variable <= topology.getNumberOfVariables(); variable++) {
+                if (topology.isReplicated(variable) && site.hasVariable(variable)) {
+                    site.addVariableToStaleSet(variable);
+                }
             }
-            transactionManager.processWaitingOperationsIfAny(variableName);
+        });
+        for (int variable = 1; variable <= topology.getNumberOfVariables(); variable++) {
+            transactionManager.processWaitingOperationsIfAny(variable);
         }
         transactionManager.checkROTransactionsForWaitingOperations(siteId);
     }
@@ -60,30 +98,41 @@ class SiteManager {
      * available.
      * @author Saumya
      */
-    Optional<Integer> getReadLock(String variableName, String transactionId) {
-        List<Integer> listOfSiteIds = variableToSiteIdMap.get(variableName);
-
-        for (Integer siteId : listOfSiteIds) {
-            Site site = siteMap.get(siteId);
-            if (siteStatusMap.get(siteId).equals(Status.UP)
-                    && site.isVariableSafeForRead(variableName)
-                    && site.getReadLock(variableName, transactionId)) {
+    Optional<Integer> getReadLock(int variable, int transactionId) {
+        for (int siteId : topology.sitesOf(variable)) {
+            if (siteStatus[siteId] == Status.UP && ask(siteId, site -> site.isVariableSafeForRead(variable)
+                    && site.getReadLock(variable, transactionId))) {
                 return Optional.of(siteId);
             }
         }
         return Optional.empty();
     }
 
+    /**
+     * Acquires a read lock on the given site, which must hold a copy of the variable that is safe for read
+     * @return false if another transaction holds the write lock there
+     */
+    boolean getReadLockOnSite(int variable, int transactionId, int siteId) {
+        return ask(siteId, site -> site.getReadLock(variable, transactionId));
+    }
+
     /**
      * Checks if all up sites can provide write locks
      * @author Saumya
      */
-    boolean canAllUpSitesProvideWriteLock(String variableName, String transactionId) {
-        List<Integer> listOfSiteIds = variableToSiteIdMap.get(variableName);
-        for (Integer siteId : listOfSiteIds) {
-            Site site = siteMap.get(siteId);
-            if (siteStatusMap.get(siteId).equals(Status.UP)
-                    && !site.isWriteLockAvailable(variableName, transactionId)) {
+    boolean canAllUpSitesProvideWriteLock(int variable, int transactionId) {
+        if (actors != null) {
+            for (boolean available : askUpSites(variable, site -> site.isWriteLockAvailable(variable, transactionId))) {
+                if (!available) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int siteId : topology.sitesOf(variable)) {
+            Site site = sites[siteId];
+            if (siteStatus[siteId] == Status.UP
+                    && !site.isWriteLockAvailable(variable, transactionId)) {
                 return false;
             }
         }
@@ -94,51 +143,62 @@ class SiteManager {
      * Checks and returns the site ids where the write lock was successfully acquired
      * @author Saumya
      */
-    List<Integer> getWriteLock(String variableName, String transactionId) {
-        List<Integer> listOfSiteIdWhereLockAcquired = new ArrayList<>();
-
+    int[] getWriteLock(int variable, int transactionId) {
         // First check if writeLock is available on all the site
         // This keeps site manager from acquiring partial writeLocks
-        if (!canAllUpSitesProvideWriteLock(variableName, transactionId)) {
-            return listOfSiteIdWhereLockAcquired;
+        if (!canAllUpSitesProvideWriteLock(variable, transactionId)) {
+            return new int[0];
         }
 
-        List<Integer> listOfSiteIds = variableToSiteIdMap.get(variableName);
-
-        for (Integer siteId : listOfSiteIds) {
-            Site site = siteMap.get(siteId);
-            if (siteStatusMap.get(siteId).equals(Status.DOWN)) {
+        int[] siteIds = topology.sitesOf(variable);
+        int[] siteIdsWhereLockAcquired = new int[siteIds.length];
+        int count = 0;
+        if (actors != null) {
+            List<CompletableFuture<Boolean>> replies = new ArrayList<>(siteIds.length);
+            for (int siteId : siteIds) {
+                replies.add(siteStatus[siteId] == Status.UP
+                        ? actors[siteId].send(site -> site.getWriteLock(variable, transactionId)) : null);
+            }
+            for (int i = 0; i < siteIds.length; i++) {
+                if (replies.get(i) != null && SiteActor.await(replies.get(i))) {
+                    siteIdsWhereLockAcquired[count++] = siteIds[i];
+                }
+            }
+            return count == siteIds.length ? siteIdsWhereLockAcquired
+                    : Arrays.copyOf(siteIdsWhereLockAcquired, count);
+        }
+        for (int siteId : siteIds) {
+            Site site = sites[siteId];
+            if (siteStatus[siteId] == Status.DOWN) {
                 continue;
             }
-            if (site.getWriteLock(variableName, transactionId)) {
-                listOfSiteIdWhereLockAcquired.add(siteId);
+            if (site.getWriteLock(variable, transactionId)) {
+                siteIdsWhereLockAcquired[count++] = siteId;
             }
         }
-        return listOfSiteIdWhereLockAcquired;
+        return count == siteIds.length ? siteIdsWhereLockAcquired : Arrays.copyOf(siteIdsWhereLockAcquired, count);
     }
 
     /**
      * Issues a read for given variable on a particular site
      * @author Omkar
      */
-    public Optional<Integer> read(String variableName, int siteId) {
-        Site site = siteMap.get(siteId);
-        if (siteStatusMap.get(siteId).equals(Status.DOWN)) {
+    public Optional<Integer> read(int variable, int siteId) {
+        getSite(siteId);
+        if (siteStatus[siteId] == Status.DOWN) {
             return Optional.empty();
         }
-        return Optional.of(site.read(variableName));
+        return Optional.of(ask(siteId, site -> site.read(variable)));
     }
 
     /**
      * Issues a read for given variable and tickTime for a read only transaction
      * @author Omkar
      */
-    Optional<Integer> readForRO(String variableName, Long tickTime) {
-        List<Integer> listOfSiteIds = variableToSiteIdMap.get(variableName);
-        for (int siteId : listOfSiteIds) {
-            Site site = siteMap.get(siteId);
-            if (siteStatusMap.get(siteId).equals(Status.UP)) {
-                Optional<Integer> val = site.readForRO(variableName, tickTime);
+    Optional<Integer> readForRO(int variable, long tickTime) {
+        for (int siteId : topology.sitesOf(variable)) {
+            if (siteStatus[siteId] == Status.UP) {
+                Optional<Integer> val = ask(siteId, site -> site.readForRO(variable, tickTime));
                 if (val.isPresent()) {
                     return val;
                 }
@@ -151,10 +211,10 @@ class SiteManager {
      * Issues a read for given variable on a particular site with particular tickTime for a read only transaction
      * @author Omkar
      */
-    Optional<Integer> readForROFromSpecificSite(String variableName, Long tickTime, int siteId) {
-        Site site = siteMap.get(siteId);
-        if (siteStatusMap.get(siteId).equals(Status.UP)) {
-            return site.readForRO(variableName, tickTime);
+    Optional<Integer> readForROFromSpecificSite(int variable, long tickTime, int siteId) {
+        getSite(siteId);
+        if (siteStatus[siteId] == Status.UP) {
+            return ask(siteId, site -> site.readForRO(variable, tickTime));
         }
         return Optional.empty();
     }
@@ -163,18 +223,25 @@ class SiteManager {
      * Commits writes for given variables and locks acquired
      * @author Omkar
      */
-    void commitWrites(Map<String, Integer> modifiedVariables, Map<String, List<Integer>> writeLocks,
+    void commitWrites(Map<Integer, Integer> modifiedVariables, Map<Integer, int[]> writeLocks,
                              long tickTime) {
-        for (String variableName : modifiedVariables.keySet()) {
-            int variableValue = modifiedVariables.get(variableName);
-            List<Integer> sites = writeLocks.get(variableName);
-            for (int siteId : sites) {
-                if (siteStatusMap.get(siteId).equals(Status.UP)) {
-                    Site site = siteMap.get(siteId);
-                    site.write(variableName, variableValue, tickTime);
+        List<CompletableFuture<Void>> replies = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> modifiedVariable : modifiedVariables.entrySet()) {
+            int variable = modifiedVariable.getKey();
+            int variableValue = modifiedVariable.getValue();
+            for (int siteId : writeLocks.get(variable)) {
+                if (siteStatus[siteId] != Status.UP) {
+                    continue;
+                }
+                if (actors != null) {
+                    replies.add(actors[siteId].tell(site -> site.write(variable, variableValue, tickTime)));
+                } else {
+                    sites[siteId].write(variable, variableValue, tickTime);
                 }
             }
-            lastWriteMap.put(variableName, tickTime);
+        }
+        for (CompletableFuture<Void> reply : replies) {
+            SiteActor.await(reply);
         }
     }
 
@@ -182,10 +249,9 @@ class SiteManager {
      * Transfers a release read lock call to particular site
      * @author Saumya
      */
-    void releaseReadLock(String variableName, int siteId, String transactionName) {
-        Site site = siteMap.get(siteId);
-        if (siteStatusMap.get(siteId).equals(Status.UP)) {
-            site.releaseReadLock(variableName, transactionName);
+    void releaseReadLock(int variable, int siteId, int transactionId) {
+        if (siteStatus[siteId] == Status.UP) {
+            tell(siteId, site -> site.releaseReadLock(variable, transactionId));
         }
     }
 
@@ -193,81 +259,114 @@ class SiteManager {
      * Transfers a release write lock call to particular site
      * @author Omkar
      */
-    void releaseWriteLock(String variableName, int siteId) {
-        Site site = siteMap.get(siteId);
-        if (siteStatusMap.get(siteId).equals(Status.UP)) {
-            site.releaseWriteLock(variableName);
+    void releaseWriteLock(int variable, int siteId) {
+        if (siteStatus[siteId] == Status.UP) {
+            tell(siteId, site -> site.releaseWriteLock(variable));
         }
     }
 
     /**
      * Finds the write lock holder for given variable
+     * @return id of the write lock holder or LockTable.NO_TRANSACTION
      * @author Saumya
      */
-    Optional<String> getWriteLockHolder(String variableName) {
-        List<Integer> siteIds = variableToSiteIdMap.get(variableName);
-        Optional<String> writeLockHolder = Optional.empty();
-        for (Integer siteId : siteIds) {
-            if (siteStatusMap.get(siteId).equals(Status.UP)) {
-                Site site = siteMap.get(siteId);
-                if (site.getWriteLockHolder(variableName).isPresent()) {
-                    return site.getWriteLockHolder(variableName);
+    int getWriteLockHolder(int variable) {
+        for (int siteId : topology.sitesOf(variable)) {
+            if (siteStatus[siteId] == Status.UP) {
+                int writeLockHolder = ask(siteId, site -> site.getWriteLockHolder(variable));
+                if (writeLockHolder != LockTable.NO_TRANSACTION) {
+                    return writeLockHolder;
                 }
             }
         }
-        return writeLockHolder;
+        return LockTable.NO_TRANSACTION;
     }
 
     /**
-     * Finds the read lock holder for given variable
-     * @author Saumya
+     * @return number of read locks held on the given variable at the up sites
      */
-    List<String> getReadLockHolders(String variableName) {
-        List<Integer> siteIds = variableToSiteIdMap.get(variableName);
-        List<String> readLockHolders = new ArrayList<>();
-        for (Integer siteId : siteIds) {
-            if (siteStatusMap.get(siteId).equals(Status.UP)) {
-                Site site = siteMap.get(siteId);
-                readLockHolders.addAll(site.getReadLockHolders(variableName));
+    int getReadLockCount(int variable) {
+        int readLockCount = 0;
+        for (int siteId : topology.sitesOf(variable)) {
+            if (siteStatus[siteId] == Status.UP) {
+                readLockCount += ask(siteId, site -> site.getReadLockCount(variable));
             }
         }
-        return readLockHolders;
+        return readLockCount;
     }
 
     /**
-     * Updates the data in the sites and variable to site mapping along with some initialization
+     * Copies the ids of the read lock holders of the given variable at the up sites into the given array
+     * @param holders destination, with room for {@link #getReadLockCount(int)} ids after offset
+     * @param offset index of the first id in holders
+     * @return index after the last copied id
+     */
+    int copyReadLockHolders(int variable, int[] holders, int offset) {
+        for (int siteId : topology.sitesOf(variable)) {
+            if (siteStatus[siteId] == Status.UP) {
+                int siteOffset = offset;
+                offset = ask(siteId, site -> site.copyReadLockHolders(variable, holders, siteOffset));
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Updates the data in the sites along with some initialization
      * @author Omkar
      */
     void initializeVariables() {
-        final int NUMBER_OF_VARIABLES = 20;
+        final int NUMBER_OF_VARIABLES = topology.getNumberOfVariables();
         for (int var = 1; var <= NUMBER_OF_VARIABLES; var++) {
-            String variableName = "x" + var;
-            List<Integer> listOfSites = new ArrayList<>();
             int variableValue = var * 10;
-            if (var % 2 == 0) {
-                for (int siteId = 1; siteId <= NUMBER_OF_SITES; siteId++) {
-                    listOfSites.add(siteId);
-                    Site site = siteMap.get(siteId);
-                    site.initializeVar(variableName, variableValue);
-                }
-                replicatedVariables.add(variableName);
-            } else {
-                int siteId = 1 + var % 10;
-                listOfSites.add(siteId);
-                Site site = siteMap.get(siteId);
-                site.initializeVar(variableName, variableValue);
+            int variable = var;
+            for (int siteId : topology.sitesOf(var)) {
+                tell(siteId, site -> site.initializeVar(variable, variableValue));
             }
-            variableToSiteIdMap.put(variableName, listOfSites);
-            lastWriteMap.put(variableName, Long.valueOf(0));
         }
         for (int i = 1; i <= NUMBER_OF_SITES; i++) {
-            siteStatusMap.put(i, Status.UP);
+            siteStatus[i] = Status.UP;
         }
     }
 
-    void dump() {
-        for (Site site : siteMap.values()) {
-            site.dumpSite();
+    /**
+     * Adds the lock headers of all variables at all sites ahead of their first locks, for clients locking variables
+     * from several threads
+     */
+    void preallocateLockHeaders() {
+        for (int i = 1; i <= NUMBER_OF_SITES; i++) {
+            tell(i, Site::preallocateLockHeaders);
+        }
+    }
+
+    /**
+     * Prunes versions which no snapshot taken at or after the low-water mark can read
+     * @param lowWaterMark begin tick of the oldest live read-only transaction
+     * @param maxSlots number of variables to visit, shared evenly by the sites
+     * @return number of removed versions
+     */
+    int collectVersions(long lowWaterMark, int maxSlots) {
+        int slotsPerSite = Math.max(1, maxSlots / NUMBER_OF_SITES);
+        int reclaimed = 0;
+        for (int i = 1; i <= NUMBER_OF_SITES; i++) {
+            reclaimed += ask(i, site -> site.collectVersions(lowWaterMark, slotsPerSite));
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Checks that the variable index belongs to a variable of the database
+     * @param variable index of the variable, e.g. 7 for x7
+     */
+    void validateVariable(int variable) {
+        if (variable <= 0 || variable > topology.getNumberOfVariables()) {
+            throw new IllegalArgumentException("Unknown variable x" + variable);
+        }
+    }
+
+    void dump(OutputSink output) {
+        for (int i = 1; i <= NUMBER_OF_SITES; i++) {
+            tell(i, site -> site.dumpSite(output));
         }
     }
 
@@ -275,7 +374,63 @@ class SiteManager {
         this.transactionManager = transactionManager;
     }
 
-    Map<String, Long> getLastWriteMapClone() {
-        return (Map<String, Long>) lastWriteMap.clone();
+    /**
+     * Returns the commit tick of the version of the given variable in the snapshot taken at the given tick, which is
+     * the last commit of the variable at or before that tick. Every copy written by that commit keeps its version,
+     * including copies on sites which are down, and no copy has a later version at or before the tick, so it is the
+     * newest such version over all copies.
+     * @param variable index of the variable
+     * @param snapshotTick begin tick of a read-only transaction
+     */
+    long getSnapshotVersionTick(int variable, long snapshotTick) {
+        long versionTick = VersionStore.NO_VERSION;
+        for (int siteId : topology.sitesOf(variable)) {
+            versionTick = Math.max(versionTick, ask(siteId, site -> site.getVersionTick(variable, snapshotTick)));
+        }
+        return versionTick;
+    }
+
+    /**
+     * Sends a request to the site and waits for its reply, or calls the site directly without actors
+     */
+    private <T> T ask(int siteId, Function<Site, T> request) {
+        return actors == null ? request.apply(sites[siteId]) : SiteActor.await(actors[siteId].send(request));
+    }
+
+    /**
+     * Sends a request which only changes the site and waits until it was handled, or calls the site directly
+     * without actors
+     */
+    private void tell(int siteId, Consumer<Site> request) {
+        if (actors == null) {
+            request.accept(sites[siteId]);
+        } else {
+            SiteActor.await(actors[siteId].tell(request));
+        }
+    }
+
+    /**
+     * Sends a request to the up sites of the variable at once and waits for all replies
+     * @return replies in the order of the sites
+     */
+    private <T> List<T> askUpSites(int variable, Function<Site, T> request) {
+        List<CompletableFuture<T>> replies = new ArrayList<>();
+        for (int siteId : topology.sitesOf(variable)) {
+            if (siteStatus[siteId] == Status.UP) {
+                replies.add(actors[siteId].send(request));
+            }
+        }
+        List<T> values = new ArrayList<>(replies.size());
+        for (CompletableFuture<T> reply : replies) {
+            values.add(SiteActor.await(reply));
+        }
+        return values;
+    }
+
+    private Site getSite(int siteId) {
+        if (siteId <= 0 || siteId > NUMBER_OF_SITES) {
+            throw new IllegalArgumentException("Unknown site " + siteId);
+        }
+        return sites[siteId];
     }
 }
@@ -0,0 +1,129 @@
+package nyu.edu.adb.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The placement of every variable of the database, computed once from a {@link DatabaseConfig}. Variables with the
+ * same sites share a single layout, so the topology takes one int per variable however many copies there are.
+ */
+class Topology {
+    private final int numberOfSites;
+    private final int numberOfVariables;
+    private final int[] layoutOfVariable;
+    private final int[][] layouts;
+
+    Topology(DatabaseConfig config) {
+        numberOfSites = config.getNumberOfSites();
+        numberOfVariables = config.getNumberOfVariables();
+        layoutOfVariable = new int[numberOfVariables + 1];
+
+        PlacementPolicy placementPolicy = config.getPlacementPolicy();
+        Map<LayoutKey, Integer> layoutIds = new HashMap<>();
+        List<int[]> distinctLayouts = new ArrayList<>();
+        for (int variable = 1; variable <= numberOfVariables; variable++) {
+            int[] sites = placementPolicy.sitesOf(variable, config.getCopies(variable), numberOfSites,
+                    numberOfVariables);
+            validate(variable, sites);
+            LayoutKey key = new LayoutKey(sites);
+            Integer layout = layoutIds.get(key);
+            if (layout == null) {
+                layout = distinctLayouts.size();
+                distinctLayouts.add(sites);
+                layoutIds.put(key, layout);
+            }
+            layoutOfVariable[variable] = layout;
+        }
+        layouts = distinctLayouts.toArray(new int[0][]);
+    }
+
+    int getNumberOfSites() {
+        return numberOfSites;
+    }
+
+    int getNumberOfVariables() {
+        return numberOfVariables;
+    }
+
+    /**
+     * Returns the ids of the sites holding the variable. The returned array is shared and must not be modified.
+     * @param variable index of the variable
+     */
+    int[] sitesOf(int variable) {
+        return layouts[layoutOfVariable[variable]];
+    }
+
+    /**
+     * @return id of the layout of the variable. Variables with the same sites have the same layout id.
+     */
+    int layoutOf(int variable) {
+        return layoutOfVariable[variable];
+    }
+
+    /**
+     * @return true if the variable has copies at more than one site
+     */
+    boolean isReplicated(int variable) {
+        return sitesOf(variable).length > 1;
+    }
+
+    /**
+     * @return number of distinct site lists used by the variables
+     */
+    int getNumberOfLayouts() {
+        return layouts.length;
+    }
+
+    /**
+     * Returns one bitmap per site, indexed by site id, in which bit v is set if the site holds variable xv
+     */
+    long[][] getHostedVariableBitmaps() {
+        long[][] bitmaps = new long[numberOfSites + 1][];
+        for (int siteId = 1; siteId <= numberOfSites; siteId++) {
+            bitmaps[siteId] = new long[(numberOfVariables >>> 6) + 1];
+        }
+        for (int variable = 1; variable <= numberOfVariables; variable++) {
+            for (int siteId : sitesOf(variable)) {
+                bitmaps[siteId][variable >>> 6] |= 1L << variable;
+            }
+        }
+        return bitmaps;
+    }
+
+    private void validate(int variable, int[] sites) {
+        if (sites == null || sites.length == 0) {
+            throw new IllegalArgumentException("Variable x" + variable + " is not placed at any site");
+        }
+        boolean[] seen = new boolean[numberOfSites + 1];
+        for (int siteId : sites) {
+            if (siteId < 1 || siteId > numberOfSites || seen[siteId]) {
+                throw new IllegalArgumentException("Invalid sites " + Arrays.toString(sites) + " for variable x"
+                        + variable);
+            }
+            seen[siteId] = true;
+        }
+    }
+
+    private static class LayoutKey {
+        private final int[] sites;
+        private final int hash;
+
+        LayoutKey(int[] sites) {
+            this.sites = sites;
+            this.hash = Arrays.hashCode(sites);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LayoutKey && Arrays.equals(sites, ((LayoutKey) o).sites);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
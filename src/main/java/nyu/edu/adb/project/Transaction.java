@@ -1,17 +1,26 @@
 package nyu.edu.adb.project;
 
 /**
- * This class contains name and beginTime of transaction which is common to both RO and RW transactions
+ * This class contains id, name and beginTime of transaction which is common to both RO and RW transactions
  */
 class Transaction {
+    private final int id;
     private final String name;
     private final long beginTime;
 
-    Transaction(String name, long tickTime) {
+    Transaction(int id, String name, long tickTime) {
+        this.id = id;
         this.name = name;
         beginTime = tickTime;
     }
 
+    /**
+     * @return the interned id of the transaction, used to identify it in all internal tables
+     */
+    int getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -19,4 +28,4 @@ class Transaction {
     public long getBeginTime() {
         return beginTime;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package nyu.edu.adb.project;
+
+/**
+ * Thrown to the client of a {@link BlockingDatabase} whose transaction was aborted, e.g. to break a deadlock. The
+ * transaction is over, its client may run it again.
+ */
+class TransactionAbortedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    TransactionAbortedException(String transactionName) {
+        super("Transaction " + transactionName + " was aborted");
+    }
+}
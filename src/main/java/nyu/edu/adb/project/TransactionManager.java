@@ -5,21 +5,78 @@ import java.util.logging.Logger;
 import java.util.*;
 
 class TransactionManager {
-    private Map<String, Transaction> transactionMap;
+    private Transaction[] transactions;
     private SiteManager siteManager;
     private WaitQueueManager waitQueueManager;
     private DeadLockManager deadLockManager;
-    Set<String> abortedTransactions;
+    private final DatabaseConfig.DeadlockHandling deadlockHandling;
+    private final BackgroundDeadlockDetector backgroundDetector;
+    private final VictimPolicy victimPolicy;
+    private final LockWaitTimer lockWaitTimer;
+    private final int lockWaitTimeoutTicks;
+    // Lock wait timeouts of single transactions by id, 0 for the configured one
+    private int[] lockWaitTimeouts;
+    private long tickTime;
+    private OperationListener operationListener;
+    private final OutputSink output;
+    private final FlightRecorder flightRecorder;
+    // Number of aborts by transaction id, a transaction beginning again after an abort is a restart
+    private int[] abortsOfTransaction;
+    private final Deque<ReadOnlyTransaction> readOnlyTransactions;
+    private final int[] abortCounts;
+    // Transactions aborted before their end, whose remaining operations are ignored
+    private final BitSet abortedBeforeEnd;
+    // Reused buffer of the read lock holders of a variable
+    private int[] readLockHolders;
+    // Reused buffer of the transactions a queued operation waits for
+    private int[] waitsForTargets;
 
     private final static Logger LOGGER =
             Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     TransactionManager(SiteManager siteManager, WaitQueueManager waitQueueManager) {
-        transactionMap = new HashMap<>();
-        abortedTransactions = new HashSet<>();
+        this(siteManager, waitQueueManager, DatabaseConfig.defaults(), null, OutputSink.console());
+    }
+
+    /**
+     * @param config configuration of the database, which decides how deadlocks are detected or prevented and how
+     * their victims are chosen
+     * @param backgroundDetector detector searching the waits-for graph with background detection, null otherwise
+     * @param output sink of the values of granted reads, commits and aborts
+     */
+    TransactionManager(SiteManager siteManager, WaitQueueManager waitQueueManager, DatabaseConfig config,
+                       BackgroundDeadlockDetector backgroundDetector, OutputSink output) {
+        DatabaseConfig.DeadlockHandling deadlockHandling = config.getDeadlockHandling();
+        if ((deadlockHandling == DatabaseConfig.DeadlockHandling.BACKGROUND_DETECTION) != (backgroundDetector != null)) {
+            throw new IllegalArgumentException("a background detector is needed exactly for background detection");
+        }
+        this.backgroundDetector = backgroundDetector;
+        victimPolicy = config.getVictimPolicy();
+        lockWaitTimeoutTicks = config.getLockWaitTimeoutTicks();
+        lockWaitTimeouts = new int[16];
+        lockWaitTimer = deadlockHandling == DatabaseConfig.DeadlockHandling.TIMEOUT
+                ? new LockWaitTimer(lockWaitTimeoutTicks + 1) : null;
+        abortsOfTransaction = new int[16];
+        transactions = new Transaction[16];
+        readLockHolders = new int[16];
+        waitsForTargets = new int[16];
+        abortCounts = new int[AbortReason.values().length];
+        abortedBeforeEnd = new BitSet();
+        this.deadlockHandling = deadlockHandling;
+        readOnlyTransactions = new ArrayDeque<>();
         this.siteManager = siteManager;
         this.waitQueueManager = waitQueueManager;
         this.deadLockManager = new DeadLockManager();
+        this.output = output;
+        flightRecorder = new FlightRecorder(config.getFlightRecorderCapacity());
+        operationListener = OperationListener.NONE;
+    }
+
+    /**
+     * @param operationListener listener notified of completed operations and ended transactions
+     */
+    void setOperationListener(OperationListener operationListener) {
+        this.operationListener = operationListener;
     }
 
     /**
@@ -27,154 +84,534 @@ class TransactionManager {
      * @author Saumya
      */
     void runDeadLockDetection() {
-        List<List<String>> cycles = deadLockManager.getDeadLockCycles();
+        if (deadlockHandling == DatabaseConfig.DeadlockHandling.BACKGROUND_DETECTION) {
+            resolveDetectedCycles(backgroundDetector.exchange(deadLockManager));
+            return;
+        }
+        if (deadlockHandling != DatabaseConfig.DeadlockHandling.DETECTION) {
+            return;
+        }
+        List<List<Integer>> cycles = deadLockManager.getDeadLockCycles();
         while (cycles.size() > 0) {
-            LOGGER.log(Level.INFO, "cycle found");
-            String transactionToBeAborted = findYoungestTransaction(cycles);
-            abortTransactionAfterDeadlock(transactionToBeAborted);
+            abortVictims(cycles);
             cycles = deadLockManager.getDeadLockCycles();
         }
     }
 
     /**
-     * Aborts transaction in order to resolve deadlock
+     * Moves the clock of the transaction manager to the given tick. With lock wait timeouts, the transactions with an
+     * operation whose deadline has come are aborted.
+     * @param tickTime current tick
+     */
+    void advanceClock(long tickTime) {
+        this.tickTime = tickTime;
+        if (lockWaitTimer == null) {
+            return;
+        }
+        for (Operation operation : lockWaitTimer.expire(tickTime)) {
+            if (waitQueueManager.isWaiting(operation)) {
+                abortTransaction(operation.getTransactionId(), AbortReason.LOCK_WAIT_TIMEOUT);
+            }
+        }
+    }
+
+    /**
+     * Sets the number of ticks the operations of the given transaction may wait for a lock with timeouts. The
+     * timeout applies to operations queued afterwards and stays when the transaction begins again.
+     * @param transactionId interned id of the transaction
+     * @param timeoutTicks positive number of ticks
+     */
+    void setLockWaitTimeout(int transactionId, int timeoutTicks) {
+        if (timeoutTicks <= 0) {
+            throw new IllegalArgumentException("lock wait timeout must be positive");
+        }
+        if (transactionId >= lockWaitTimeouts.length) {
+            lockWaitTimeouts = Arrays.copyOf(lockWaitTimeouts,
+                    Math.max(transactionId + 1, lockWaitTimeouts.length * 2));
+        }
+        lockWaitTimeouts[transactionId] = timeoutTicks;
+    }
+
+    private int getLockWaitTimeout(int transactionId) {
+        int timeout = transactionId < lockWaitTimeouts.length ? lockWaitTimeouts[transactionId] : 0;
+        return timeout == 0 ? lockWaitTimeoutTicks : timeout;
+    }
+
+    /**
+     * Resolves the cycles found by the background detector in a snapshot of the waits-for graph. A cycle may have
+     * been broken since the snapshot was taken, e.g. by an earlier victim, so only cycles whose edges are all still in
+     * the graph are resolved.
+     */
+    private void resolveDetectedCycles(List<List<Integer>> cycles) {
+        cycles.removeIf(cycle -> !isCycleInGraph(cycle));
+        while (!cycles.isEmpty()) {
+            abortVictims(cycles);
+            cycles.removeIf(cycle -> !isCycleInGraph(cycle));
+        }
+    }
+
+    /**
+     * Aborts the victims the victim policy chooses for the given cycles
+     */
+    private void abortVictims(List<List<Integer>> cycles) {
+        LOGGER.log(Level.INFO, "cycle found");
+        for (int victim : victimPolicy.chooseVictims(cycles, this::getTransaction)) {
+            abortTransaction(victim, AbortReason.DEADLOCK);
+        }
+    }
+
+    private boolean isCycleInGraph(List<Integer> cycle) {
+        for (int i = 0; i < cycle.size(); i++) {
+            int transactionId = cycle.get(i);
+            if (getTransaction(transactionId) == null
+                    || !deadLockManager.hasEdge(transactionId, cycle.get((i + 1) % cycle.size()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the background deadlock detector if there is one
+     */
+    void close() {
+        if (backgroundDetector != null) {
+            backgroundDetector.stop();
+        }
+    }
+
+    /**
+     * Aborts a live read-write transaction on request of its client
+     * @return false if the transaction is not a live read-write transaction
+     */
+    boolean abortByClient(int transactionId) {
+        if (!(getTransaction(transactionId) instanceof ReadWriteTransaction)) {
+            return false;
+        }
+        abortTransaction(transactionId, AbortReason.CLIENT_REQUEST);
+        return true;
+    }
+
+    /**
+     * Aborts transaction in order to resolve or prevent a deadlock
      * @author Saumya
      */
-    private void abortTransactionAfterDeadlock(String transactionName) {
-        LOGGER.log(Level.INFO, "aborting transaction " + transactionName);
-        deadLockManager.removeNode(transactionName);
-        waitQueueManager.removeAllPendingOperationOfTransaction(transactionName);
+    private void abortTransaction(int transactionId, AbortReason reason) {
+        Transaction transaction = transactions[transactionId];
+        flightRecorder.record(FlightRecorder.Event.ABORT, tickTime, transactionId, FlightRecorder.NO_VARIABLE,
+                reason.ordinal());
+        List<Integer> waitingVariables = waitQueueManager.getWaitingVariables(transactionId);
+        waitQueueManager.removeAllPendingOperationOfTransaction(transactionId);
 
-        Transaction transaction = transactionMap.get(transactionName);
         if (transaction instanceof ReadOnlyTransaction) {
+            removeFromWaitsForGraph(transactionId, waitingVariables);
             return;
         }
 
         ReadWriteTransaction readWriteTransaction = (ReadWriteTransaction) transaction;
         releaseResourcesOfReadWriteTransaction(readWriteTransaction);
+        for (int variable : waitingVariables) {
+            processWaitingOperationsIfAny(variable);
+        }
+        removeFromWaitsForGraph(transactionId, waitingVariables);
+
+        abortCounts[reason.ordinal()]++;
+        countAbort(transactionId);
+        abortedBeforeEnd.set(transactionId);
+        transactions[transactionId] = null;
+        output.println(transaction.getName() + " aborts");
+        output.println("Reason for abortion: " + reason.getDescription());
+        operationListener.transactionAborted(transactionId, reason);
+    }
+
+    /**
+     * Removes an ended transaction from the waits-for graph once its locks are released and its operations are
+     * dequeued. The locks are released one variable at a time, so edges derived in between may still point to it.
+     * @param waitingVariables variables the transaction had waiting operations for
+     */
+    private void removeFromWaitsForGraph(int transactionId, List<Integer> waitingVariables) {
+        if (!deadlockHandling.usesWaitsForGraph()) {
+            return;
+        }
+        refreshWaitsForEdgesOfWaiters(waitingVariables);
+        deadLockManager.removeNode(transactionId);
+    }
 
-        abortedTransactions.add(transactionName);
-        transactionMap.remove(transactionName);
-        System.out.println(transactionName + " aborts");
-        System.out.println("Reason for abortion: Deadlock removal");
+    /**
+     * Derives the waits-for edges of the transactions waiting for the given variables again from the wait queues and
+     * the lock holders. Called whenever operations leave a queue, because the operations behind them then wait for
+     * other transactions, and edges to granted or removed operations must not stay in the graph.
+     */
+    private void refreshWaitsForEdgesOfWaiters(Collection<Integer> variables) {
+        Set<Integer> waitingTransactions = new LinkedHashSet<>();
+        for (int variable : variables) {
+            for (Operation operation : waitQueueManager.getWaitingOperations(variable)) {
+                waitingTransactions.add(operation.getTransactionId());
+            }
+        }
+        refreshWaitsForEdges(waitingTransactions);
     }
 
     /**
-     * Finds youngest transaction in the list of cycles
-     * @author Saumya
+     * Replaces the outgoing waits-for edges of the given transactions by the edges of the operations they still have
+     * waiting. A transaction without waiting operations loses all its outgoing edges.
      */
-    private String findYoungestTransaction(List<List<String>> cycles) {
-        String youngestTransaction = null;
-        long yougestAge = Long.MIN_VALUE;
-        for (List<String> cycle : cycles) {
-            for (String transactionName : cycle) {
-                Transaction transaction = transactionMap.get(transactionName);
-                if (transaction.getBeginTime() > yougestAge) {
-                    yougestAge = transaction.getBeginTime();
-                    youngestTransaction = transactionName;
+    private void refreshWaitsForEdges(Collection<Integer> transactionIds) {
+        for (int transactionId : transactionIds) {
+            Set<Integer> targets = new LinkedHashSet<>();
+            for (int variable : new LinkedHashSet<>(waitQueueManager.getWaitingVariables(transactionId))) {
+                collectWaitsForTargets(variable, transactionId, targets);
+            }
+            deadLockManager.replaceOutgoingEdges(transactionId, targets);
+        }
+    }
+
+    /**
+     * Adds the transactions the operations of the given transaction on the variable wait for, by the same rule as
+     * when an operation is queued. A read waits for the last write queued before it or else the write lock holder. A
+     * write waits for the reads queued after the last write before it, else that write, else the write lock holder,
+     * else the read lock holders.
+     */
+    private void collectWaitsForTargets(int variable, int transactionId, Set<Integer> targets) {
+        int writeLockHolder = siteManager.getWriteLockHolder(variable);
+        Operation lastWrite = null;
+        List<Integer> readersAfterLastWrite = new ArrayList<>();
+        for (Operation operation : waitQueueManager.getWaitingOperations(variable)) {
+            boolean ownOperation = operation.getTransactionId() == transactionId;
+            if (operation.getOperationType() == Operation.OperationType.READ) {
+                if (ownOperation) {
+                    if (lastWrite != null) {
+                        targets.add(lastWrite.getTransactionId());
+                    } else if (writeLockHolder != LockTable.NO_TRANSACTION) {
+                        targets.add(writeLockHolder);
+                    }
                 }
+                readersAfterLastWrite.add(operation.getTransactionId());
+                continue;
             }
+            if (ownOperation) {
+                if (!readersAfterLastWrite.isEmpty()) {
+                    targets.addAll(readersAfterLastWrite);
+                } else if (lastWrite != null) {
+                    targets.add(lastWrite.getTransactionId());
+                } else if (writeLockHolder != LockTable.NO_TRANSACTION) {
+                    targets.add(writeLockHolder);
+                } else {
+                    int numberOfReadLockHolders = copyReadLockHolders(variable);
+                    for (int i = 0; i < numberOfReadLockHolders; i++) {
+                        targets.add(readLockHolders[i]);
+                    }
+                }
+            }
+            lastWrite = operation;
+            readersAfterLastWrite.clear();
+        }
+        targets.remove(transactionId);
+    }
+
+    private void countAbort(int transactionId) {
+        if (transactionId >= abortsOfTransaction.length) {
+            abortsOfTransaction = Arrays.copyOf(abortsOfTransaction,
+                    Math.max(transactionId + 1, abortsOfTransaction.length * 2));
         }
-        return youngestTransaction;
+        abortsOfTransaction[transactionId]++;
+    }
+
+    /**
+     * @param transactionId interned id of the transaction
+     * @return true if the transaction has aborted at least once
+     */
+    boolean hasAborted(int transactionId) {
+        return transactionId < abortsOfTransaction.length && abortsOfTransaction[transactionId] > 0;
+    }
+
+    /**
+     * @return number of read-write transactions aborted for the given reason
+     */
+    int getAbortCount(AbortReason reason) {
+        return abortCounts[reason.ordinal()];
+    }
+
+    /**
+     * @return true if the transaction has begun and has neither committed nor aborted
+     */
+    boolean isActive(int transactionId) {
+        return getTransaction(transactionId) != null;
+    }
+
+    /**
+     * @return recorder of the lock grants, waits, aborts and commits, which records nothing unless it was configured
+     */
+    FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    /**
+     * @return true if the transaction has an operation waiting for a lock
+     */
+    boolean isWaiting(int transactionId) {
+        return waitQueueManager.hasWaitingOperation(transactionId);
     }
 
     /**
      * Creates a new Read Write Transaction
+     * @param transactionId interned id of the transaction
+     * @param transactionName name of the transaction, used for output
      * @author Saumya
      */
-    void createReadWriteTransaction(String transactionName, long tickTime) {
-        validateTransactionName(transactionName);
-        Transaction transaction = new ReadWriteTransaction(transactionName, tickTime);
-        transactionMap.put(transactionName, transaction);
+    void createReadWriteTransaction(int transactionId, String transactionName, long tickTime) {
+        validateTransactionName(transactionId, transactionName);
+        int restartCount = transactionId < abortsOfTransaction.length ? abortsOfTransaction[transactionId] : 0;
+        transactions[transactionId] = new ReadWriteTransaction(transactionId, transactionName, tickTime,
+                restartCount);
     }
 
     /**
      * Creates a new Read-Only Transaction
+     * @param transactionId interned id of the transaction
+     * @param transactionName name of the transaction, used for output
      * @author Omkar
      */
-    void createReadOnlyTransaction(String transactionName, long tickTime) {
-        validateTransactionName(transactionName);
+    void createReadOnlyTransaction(int transactionId, String transactionName, long tickTime) {
+        validateTransactionName(transactionId, transactionName);
+        ReadOnlyTransaction readOnlyTransaction = new ReadOnlyTransaction(transactionId, transactionName, tickTime);
+        transactions[transactionId] = readOnlyTransaction;
+        readOnlyTransactions.addLast(readOnlyTransaction);
+    }
 
-        Transaction transaction = new ReadOnlyTransaction(transactionName, tickTime, siteManager.getLastWriteMapClone());
-        transactionMap.put(transactionName, transaction);
+    /**
+     * Returns the begin tick of the oldest live read-only transaction. Versions older than the one visible at that
+     * tick cannot be read any more.
+     * @param tickTime current tick, returned if there are no live read-only transactions
+     */
+    long getLowWaterMark(long tickTime) {
+        // Read-only transactions are queued in begin order, ended ones are dropped once they reach the head
+        ReadOnlyTransaction oldest = readOnlyTransactions.peekFirst();
+        while (oldest != null && getTransaction(oldest.getId()) != oldest) {
+            readOnlyTransactions.pollFirst();
+            oldest = readOnlyTransactions.peekFirst();
+        }
+        return oldest == null ? tickTime : oldest.getBeginTime();
     }
 
     /**
-     * Validates the name of the transaction
+     * Validates the name of the transaction and makes room for its id
      * @author Saumya
      */
-    private void validateTransactionName(String transactionName) throws IllegalArgumentException {
-        if (transactionMap.containsKey(transactionName)) {
+    private void validateTransactionName(int transactionId, String transactionName) throws IllegalArgumentException {
+        if (transactionId >= transactions.length) {
+            transactions = Arrays.copyOf(transactions, Math.max(transactionId + 1, transactions.length * 2));
+        }
+        if (transactions[transactionId] != null) {
             throw new IllegalArgumentException("Transaction with name " + transactionName + " already exists");
         }
+        abortedBeforeEnd.clear(transactionId);
+    }
+
+    /**
+     * Returns the live transaction with the given id or null
+     */
+    private Transaction getTransaction(int transactionId) {
+        return transactionId < transactions.length ? transactions[transactionId] : null;
     }
 
     /**
      * Performs a write for given transaction if possible or adds to wait queue according to two-phase locking
      * @author Saumya
      */
-    void write(String transactionName, String variableName, int value) {
-        ReadWriteTransaction t;
-        if (!(transactionMap.get(transactionName) instanceof ReadWriteTransaction)) {
-            throw new IllegalArgumentException("Transaction " + transactionName + " is a ReadOnly Transaction, " +
-                    "cannot write");
-        }
-        t = (ReadWriteTransaction) transactionMap.get(transactionName);
-
-        if (waitQueueManager.precedingWriteOperationExists(variableName) ||
-                !siteManager.canAllUpSitesProvideWriteLock(variableName, transactionName)) {
-            handleWaitingForOperation(variableName, transactionName, value);
+    void write(int transactionId, int variable, int value) {
+        Transaction transaction = getTransaction(transactionId);
+        if (transaction == null && abortedBeforeEnd.get(transactionId)) {
+            LOGGER.log(Level.INFO, "ignoring write of aborted transaction");
             return;
         }
+        if (!(transaction instanceof ReadWriteTransaction)) {
+            throw new IllegalArgumentException("Transaction " + (transaction == null ? transactionId
+                    : transaction.getName()) + " is a ReadOnly Transaction, cannot write");
+        }
+        if (!writeWithoutWaiting((ReadWriteTransaction) transaction, variable, value)) {
+            handleWaitingForOperation(variable, transactionId, value);
+        }
+    }
 
-        List<Integer> list = siteManager.getWriteLock(variableName, transactionName);
-        if (!list.isEmpty()) {
-            t.addWriteLock(variableName, list);
-            t.addAccessedSites(list);
-            t.writeToVariable(variableName, value);
-            return;
+    /**
+     * Performs the write of a live read-write transaction if it gets its write locks right away. Nothing is queued,
+     * aborted or added to the waits-for graph, and only the lock headers of the variable and the transaction itself
+     * are changed, so writes of different transactions to different variables may run at the same time.
+     * @return true if the write was performed, false if it has to go through {@link #write(int, int, int)}
+     */
+    boolean tryWriteWithoutWaiting(int transactionId, int variable, int value) {
+        Transaction transaction = getTransaction(transactionId);
+        return transaction instanceof ReadWriteTransaction
+                && writeWithoutWaiting((ReadWriteTransaction) transaction, variable, value);
+    }
+
+    private boolean writeWithoutWaiting(ReadWriteTransaction t, int variable, int value) {
+        int transactionId = t.getId();
+        // A transaction which holds the write lock writes again without waiting behind the transactions waiting for it
+        if (!t.hasWriteLock(variable) && (waitQueueManager.precedingWriteOperationExists(variable) ||
+                !siteManager.canAllUpSitesProvideWriteLock(variable, transactionId))) {
+            return false;
         }
 
-        handleWaitingForOperation(variableName, transactionName, value);
+        int[] siteIds = siteManager.getWriteLock(variable, transactionId);
+        if (siteIds.length == 0) {
+            return false;
+        }
+        flightRecorder.record(FlightRecorder.Event.WRITE_LOCK, tickTime, transactionId, variable, siteIds.length);
+        t.addWriteLock(variable, siteIds);
+        t.addAccessedSites(siteIds);
+        t.writeToVariable(variable, value);
+        operationListener.writeCompleted(transactionId, variable);
+        return true;
     }
 
     /**
-     * Updates waits-for graph and adds read operation to queue
+     * Adds read operation to queue and updates waits-for graph or prevents a deadlock
      * @author Saumya
      */
-    private void handleWaitingForOperation(String variableName, String transactionName) {
-        Optional<String> lastWriteTransactionFromWaitQueue = waitQueueManager.getLastWriteTransaction(variableName);
+    private void handleWaitingForOperation(int variable, int transactionId) {
+        Optional<Integer> lastWriteTransactionFromWaitQueue = waitQueueManager.getLastWriteTransaction(variable);
+        int numberOfTargets = 0;
 
         if (lastWriteTransactionFromWaitQueue.isPresent()) {
-            deadLockManager.addEdge(transactionName, lastWriteTransactionFromWaitQueue.get());
+            waitsForTargets[numberOfTargets++] = lastWriteTransactionFromWaitQueue.get();
         } else {
-            Optional<String> writeLockHolder = siteManager.getWriteLockHolder(variableName);
-            writeLockHolder.ifPresent(s -> deadLockManager.addEdge(transactionName, s));
+            int writeLockHolder = siteManager.getWriteLockHolder(variable);
+            if (writeLockHolder != LockTable.NO_TRANSACTION) {
+                waitsForTargets[numberOfTargets++] = writeLockHolder;
+            }
         }
 
-        waitQueueManager.addWaitingOperation(variableName,
-                new Operation(transactionName, Operation.OperationType.READ, variableName));
+        Operation operation = new Operation(transactionId, Operation.OperationType.READ, variable);
+        waitQueueManager.addWaitingOperation(variable, operation);
+        waitFor(operation, waitsForTargets, numberOfTargets);
     }
 
     /**
-     * Updates waits-for graph and adds write operation to queue
+     * Adds write operation to queue and updates waits-for graph or prevents a deadlock
      * @author Saumya
      */
-    private void handleWaitingForOperation(String variableName, String transactionName, int value) {
-        LOGGER.log(Level.INFO, "Adding write operation for " + transactionName + " to the wait queue");
-        Optional<String> writeLockHolder = siteManager.getWriteLockHolder(variableName);
-        List<String> queueHolders = waitQueueManager.getQueueHoldersForWriteOperation(variableName);
+    private void handleWaitingForOperation(int variable, int transactionId, int value) {
+        int writeLockHolder = siteManager.getWriteLockHolder(variable);
+        List<Integer> queueHolders = waitQueueManager.getQueueHoldersForWriteOperation(variable);
+        int[] targets = waitsForTargets;
+        int numberOfTargets;
 
         if (!queueHolders.isEmpty()) {
-            deadLockManager.addMultipleEdges(transactionName, queueHolders);
-        } else if (writeLockHolder.isPresent()) {
-            deadLockManager.addEdge(transactionName, writeLockHolder.get());
+            if (queueHolders.size() > waitsForTargets.length) {
+                waitsForTargets = new int[Math.max(queueHolders.size(), waitsForTargets.length * 2)];
+                targets = waitsForTargets;
+            }
+            for (numberOfTargets = 0; numberOfTargets < queueHolders.size(); numberOfTargets++) {
+                targets[numberOfTargets] = queueHolders.get(numberOfTargets);
+            }
+        } else if (writeLockHolder != LockTable.NO_TRANSACTION) {
+            targets[0] = writeLockHolder;
+            numberOfTargets = 1;
         } else {
-            List<String> readLockHolders = siteManager.getReadLockHolders(variableName);
-            deadLockManager.addMultipleEdges(transactionName, readLockHolders);
+            numberOfTargets = copyReadLockHolders(variable);
+            targets = readLockHolders;
+        }
+        Operation operation = new Operation(transactionId, Operation.OperationType.WRITE, variable, value);
+        waitQueueManager.addWaitingOperation(variable, operation);
+        waitFor(operation, targets, numberOfTargets);
+    }
+
+    /**
+     * Lets the transaction wait for its queued operation. With detection the waits-for graph gets edges to the given
+     * transactions. The prevention modes look at every transaction the operation waits for, the lock holders and the
+     * transactions queued before it. With wait-die the transaction is aborted if it is younger than any of them, with
+     * wound-wait the younger ones are aborted. Either way only older transactions wait for younger ones, so there
+     * cannot be a cycle. With timeouts the operation gets a deadline instead.
+     * @param operation the operation, which is already queued
+     * @param targets transactions the waits-for graph gets edges to
+     * @param numberOfTargets number of transactions at the start of targets
+     */
+    private void waitFor(Operation operation, int[] targets, int numberOfTargets) {
+        int transactionId = operation.getTransactionId();
+        flightRecorder.record(FlightRecorder.Event.WAIT, tickTime, transactionId, operation.getVariable(),
+                operation.getOperationType().ordinal());
+        if (deadlockHandling.usesWaitsForGraph()) {
+            deadLockManager.addMultipleEdges(transactionId, targets, numberOfTargets);
+            return;
+        }
+        if (deadlockHandling == DatabaseConfig.DeadlockHandling.TIMEOUT) {
+            operation.deadline = tickTime + getLockWaitTimeout(transactionId);
+            lockWaitTimer.schedule(operation);
+            return;
+        }
+        List<Integer> blockingTransactions = getBlockingTransactions(transactionId, operation.getVariable(),
+                operation.getOperationType());
+        switch (deadlockHandling) {
+            case WAIT_DIE:
+                for (int blockingTransaction : blockingTransactions) {
+                    if (isYounger(transactionId, blockingTransaction)) {
+                        abortTransaction(transactionId, AbortReason.WAIT_DIE);
+                        return;
+                    }
+                }
+                break;
+            case WOUND_WAIT:
+                for (int blockingTransaction : blockingTransactions) {
+                    if (isYounger(blockingTransaction, transactionId)) {
+                        abortTransaction(blockingTransaction, AbortReason.WOUND_WAIT);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown deadlock handling " + deadlockHandling);
         }
-        waitQueueManager.addWaitingOperation(variableName,
-                new Operation(transactionName, Operation.OperationType.WRITE, variableName, value));
+    }
+
+    /**
+     * @return the other transactions holding a conflicting lock on the variable or queued for it
+     */
+    private List<Integer> getBlockingTransactions(int transactionId, int variable,
+                                                  Operation.OperationType operationType) {
+        List<Integer> blockingTransactions = new ArrayList<>();
+        int writeLockHolder = siteManager.getWriteLockHolder(variable);
+        if (writeLockHolder != LockTable.NO_TRANSACTION && writeLockHolder != transactionId) {
+            blockingTransactions.add(writeLockHolder);
+        }
+        if (operationType == Operation.OperationType.WRITE) {
+            int numberOfReadLockHolders = copyReadLockHolders(variable);
+            for (int i = 0; i < numberOfReadLockHolders; i++) {
+                if (readLockHolders[i] != transactionId) {
+                    blockingTransactions.add(readLockHolders[i]);
+                }
+            }
+        }
+        for (Operation operation : waitQueueManager.getWaitingOperations(variable)) {
+            if (operation.getTransactionId() != transactionId
+                    && !blockingTransactions.contains(operation.getTransactionId())) {
+                blockingTransactions.add(operation.getTransactionId());
+            }
+        }
+        return blockingTransactions;
+    }
+
+    /**
+     * @return true if both transactions are live and the first one began after the second one
+     */
+    private boolean isYounger(int transactionId, int otherTransactionId) {
+        Transaction transaction = getTransaction(transactionId);
+        Transaction otherTransaction = getTransaction(otherTransactionId);
+        return transaction != null && otherTransaction != null && transactionId != otherTransactionId
+                && transaction.getBeginTime() > otherTransaction.getBeginTime();
+    }
+
+    /**
+     * Copies the read lock holders of the variable at the up sites into the reused readLockHolders buffer, which
+     * grows if they do not fit
+     * @return number of read lock holders
+     */
+    private int copyReadLockHolders(int variable) {
+        int numberOfReadLockHolders = siteManager.getReadLockCount(variable);
+        if (numberOfReadLockHolders > readLockHolders.length) {
+            readLockHolders = new int[Math.max(numberOfReadLockHolders, readLockHolders.length * 2)];
+        }
+        return siteManager.copyReadLockHolders(variable, readLockHolders, 0);
     }
 
     /**
@@ -182,13 +619,44 @@ class TransactionManager {
      * or returns null if the variable is unavailable
      * @author Saumya
      */
-    Optional<Integer> read(String transactionName, String variableName) {
-        if (transactionMap.get(transactionName) instanceof ReadOnlyTransaction) {
-            return readFromReadOnlyTransaction(transactionMap.get(transactionName), variableName);
+    Optional<Integer> read(int transactionId, int variable) {
+        Transaction transaction = getTransaction(transactionId);
+        if (transaction == null && abortedBeforeEnd.get(transactionId)) {
+            LOGGER.log(Level.INFO, "ignoring read of aborted transaction");
+            return Optional.empty();
         }
+        Optional<Integer> value;
+        if (transaction instanceof ReadOnlyTransaction) {
+            value = readFromReadOnlyTransaction(transaction, variable);
+        } else {
+            value = readFromReadWriteTransaction((ReadWriteTransaction) transaction, variable);
+        }
+        if (value.isPresent()) {
+            operationListener.readCompleted(transactionId, variable, value.get());
+        }
+        return value;
+    }
 
-        ReadWriteTransaction readWriteTransaction = (ReadWriteTransaction) transactionMap.get(transactionName);
-        return readFromReadWriteTransaction(readWriteTransaction, variableName);
+    /**
+     * Performs the read of a live transaction if it can be served right away, with the same restrictions as
+     * {@link #tryWriteWithoutWaiting(int, int, int)}. A read-only transaction whose snapshot is not readable is not
+     * marked as waiting.
+     * @return the value read, or empty if the read has to go through {@link #read(int, int)}
+     */
+    Optional<Integer> tryReadWithoutWaiting(int transactionId, int variable) {
+        Transaction transaction = getTransaction(transactionId);
+        Optional<Integer> value;
+        if (transaction instanceof ReadOnlyTransaction) {
+            value = readSnapshot((ReadOnlyTransaction) transaction, variable);
+        } else if (transaction instanceof ReadWriteTransaction) {
+            value = readWithoutWaiting((ReadWriteTransaction) transaction, variable);
+        } else {
+            return Optional.empty();
+        }
+        if (value.isPresent()) {
+            operationListener.readCompleted(transactionId, variable, value.get());
+        }
+        return value;
     }
 
     /**
@@ -196,16 +664,24 @@ class TransactionManager {
      * @author Saumya
      */
     private Optional<Integer> readFromReadWriteTransaction(ReadWriteTransaction readWriteTransaction,
-                                                           String variableName) {
+                                                           int variable) {
+        Optional<Integer> data = readWithoutWaiting(readWriteTransaction, variable);
+        if (!data.isPresent()) {
+            handleWaitingForOperation(variable, readWriteTransaction.getId());
+        }
+        return data;
+    }
+
+    private Optional<Integer> readWithoutWaiting(ReadWriteTransaction readWriteTransaction, int variable) {
         Optional<Integer> data;
-        Map<String, Integer> previousWrites = readWriteTransaction.getModifiedVariables();
-        if (previousWrites.containsKey(variableName)) {
-            return Optional.of(previousWrites.get(variableName));
+        Map<Integer, Integer> previousWrites = readWriteTransaction.getModifiedVariables();
+        if (previousWrites.containsKey(variable)) {
+            return Optional.of(previousWrites.get(variable));
         }
 
-        if (readWriteTransaction.hasReadLock(variableName)) {
-            Integer siteId = readWriteTransaction.getReadLockSiteId(variableName);
-            data = siteManager.read(variableName, siteId);
+        if (readWriteTransaction.hasReadLock(variable)) {
+            int siteId = readWriteTransaction.getReadLockSiteId(variable);
+            data = siteManager.read(variable, siteId);
             if (data.isPresent()) {
                 return data;
             }
@@ -215,30 +691,28 @@ class TransactionManager {
             If we are not given a situation where all the sites fail, this should work. At least one of the sites should
             be up.
         */
-        if (readWriteTransaction.hasWriteLock(variableName)) {
-            if (readWriteTransaction.getModifiedVariables().containsKey(variableName)) {
-               return Optional.of(readWriteTransaction.getModifiedVariables().get(variableName));
+        if (readWriteTransaction.hasWriteLock(variable)) {
+            if (readWriteTransaction.getModifiedVariables().containsKey(variable)) {
+               return Optional.of(readWriteTransaction.getModifiedVariables().get(variable));
             } else {
                 // There will never be a case for else. If we get a write lock we must have modified that variable
             }
         }
 
-        String transactionName = readWriteTransaction.getName();
+        int transactionId = readWriteTransaction.getId();
 
-        if (waitQueueManager.isOperationAlreadyWaiting(variableName)) {
-            handleWaitingForOperation(variableName, transactionName);
+        if (waitQueueManager.isOperationAlreadyWaiting(variable)) {
             return Optional.empty();
         }
 
-        final Optional<Integer> siteId = siteManager.getReadLock(variableName, transactionName);
+        final Optional<Integer> siteId = siteManager.getReadLock(variable, transactionId);
 
         if (siteId.isPresent()) {
-            readWriteTransaction.addReadLock(variableName, siteId.get());
+            flightRecorder.record(FlightRecorder.Event.READ_LOCK, tickTime, transactionId, variable, siteId.get());
+            readWriteTransaction.addReadLock(variable, siteId.get());
             readWriteTransaction.addAccessedSite(siteId.get());
-            return siteManager.read(variableName, siteId.get());
+            return siteManager.read(variable, siteId.get());
         }
-
-        handleWaitingForOperation(variableName, transactionName);
         return Optional.empty();
     }
 
@@ -246,30 +720,37 @@ class TransactionManager {
      * Tries to perform a read for Read-Only transaction
      * @author Omkar
      */
-    private Optional<Integer> readFromReadOnlyTransaction(Transaction transaction, String variableName) {
+    private Optional<Integer> readFromReadOnlyTransaction(Transaction transaction, int variable) {
         ReadOnlyTransaction readOnlyTransaction = (ReadOnlyTransaction) transaction;
-        Long tickTime = readOnlyTransaction.getVariableTickTIme(variableName);
-        Optional<Integer> val = siteManager.readForRO(variableName, tickTime);
+        Optional<Integer> val = readSnapshot(readOnlyTransaction, variable);
         if (!val.isPresent()) {
-            readOnlyTransaction.setPendingReadVariable(variableName);
+            readOnlyTransaction.setPendingReadVariable(variable);
         }
         return val;
     }
 
+    private Optional<Integer> readSnapshot(ReadOnlyTransaction readOnlyTransaction, int variable) {
+        long tickTime = siteManager.getSnapshotVersionTick(variable, readOnlyTransaction.getBeginTime());
+        return siteManager.readForRO(variable, tickTime);
+    }
+
     /**
      * Checks if any Read only transactions are waiting for a particular site recovery and executes the reads if possible
      * @author Omkar
      */
     void checkROTransactionsForWaitingOperations(int siteId) {
-        for (String transactionName : transactionMap.keySet()) {
-            Transaction transaction = transactionMap.get(transactionName);
+        for (Transaction transaction : transactions) {
             if (transaction instanceof ReadOnlyTransaction) {
                 ReadOnlyTransaction readOnlyTransaction = (ReadOnlyTransaction) transaction;
-                if (readOnlyTransaction.getPendingReadVariable() != null) {
-                    String variableName = readOnlyTransaction.getPendingReadVariable();
-                    Long tickTime = readOnlyTransaction.getVariableTickTIme(variableName);
-                    Optional<Integer> readValue = siteManager.readForROFromSpecificSite(variableName, tickTime, siteId);
-                    readValue.ifPresent(integer -> System.out.println(variableName + ": " + integer));
+                int variable = readOnlyTransaction.getPendingReadVariable();
+                if (variable != ReadOnlyTransaction.NO_PENDING_READ) {
+                    long tickTime = siteManager.getSnapshotVersionTick(variable,
+                            readOnlyTransaction.getBeginTime());
+                    Optional<Integer> readValue = siteManager.readForROFromSpecificSite(variable, tickTime, siteId);
+                    if (readValue.isPresent()) {
+                        output.println("x" + variable + ": " + readValue.get());
+                        operationListener.readCompleted(readOnlyTransaction.getId(), variable, readValue.get());
+                    }
                 }
             }
         }
@@ -277,94 +758,115 @@ class TransactionManager {
 
     /**
      * Ends the given transaction and commits it if possible
+     * @param transactionName name of the transaction, used for logging if it is not found
      * @author Omkar
      */
-    void endTransaction(String transactionName, long tickTime) {
-        if (!transactionMap.containsKey(transactionName)) {
-            LOGGER.log(Level.INFO, "Transaction " + transactionName + " not found in Transaction Map");
+    void endTransaction(int transactionId, String transactionName, long tickTime) {
+        if (getTransaction(transactionId) == null) {
+            LOGGER.log(Level.INFO, "Transaction {0} not found in Transaction Map", transactionName);
             return;
         }
-        boolean wasCommitted = commitTransaction(transactionName, tickTime);
-        if (wasCommitted) {
-            LOGGER.log(Level.INFO, "Transaction " + transactionName + " committed successfully");
-        } else {
+        boolean wasCommitted = commitTransaction(transactionId, tickTime);
+        if (!wasCommitted) {
             //read only transactions never abort, so this must be a read-write transaction
-            ReadWriteTransaction transaction = (ReadWriteTransaction) transactionMap.get(transactionName);
-            abortedTransactions.add(transactionName);
-            LOGGER.log(Level.INFO, "Transaction " + transactionName + " was aborted");
+            countAbort(transactionId);
         }
-        transactionMap.remove(transactionName);
+        transactions[transactionId] = null;
+        operationListener.transactionEnded(transactionId, wasCommitted);
     }
 
     /**
      * Performs any waiting operations for given variable
      * @author Saumya
      */
-    void processWaitingOperationsIfAny(String variableName) {
-        Optional<Operation> nextOp = waitQueueManager.peekAtNextWaitingOperation(variableName);
+    void processWaitingOperationsIfAny(int variable) {
+        Optional<Operation> nextOp = waitQueueManager.peekAtNextWaitingOperation(variable);
         if (!nextOp.isPresent()) {
             return;
         }
         Operation operation = nextOp.get();
         if (operation.getOperationType().equals(Operation.OperationType.WRITE)) {
-            LOGGER.log(Level.INFO, "Transaction " + operation.getTransactionId() +
-                    " trying to get a write lock for " + variableName);
-            List<Integer> siteIds = siteManager.getWriteLock(operation.getVariableName(),
+            int[] siteIds = siteManager.getWriteLock(operation.getVariable(),
                     operation.getTransactionId());
-
-            LOGGER.log(Level.INFO, "Transaction " + operation.getTransactionId() +
-                    " got write locks for " + variableName + " on sites " + siteIds.toString());
             // Keep waiting if no site is available
-            if (siteIds.isEmpty()) {
+            if (siteIds.length == 0) {
                 return;
             }
+            flightRecorder.record(FlightRecorder.Event.WRITE_LOCK, tickTime, operation.getTransactionId(), variable,
+                    siteIds.length);
 
-            waitQueueManager.pollNextWaitingOperation(variableName);
+            waitQueueManager.pollNextWaitingOperation(variable);
             ReadWriteTransaction readWriteTransaction =
-                    (ReadWriteTransaction) transactionMap.get(operation.getTransactionId());
+                    (ReadWriteTransaction) transactions[operation.getTransactionId()];
 
-            readWriteTransaction.addWriteLock(variableName, siteIds);
+            readWriteTransaction.addWriteLock(variable, siteIds);
             readWriteTransaction.addAccessedSites(siteIds);
-            readWriteTransaction.writeToVariable(variableName, operation.getValue());
+            readWriteTransaction.writeToVariable(variable, operation.getValue());
+            operationListener.writeCompleted(operation.getTransactionId(), variable);
+            refreshWaitsForEdgesAfterGrant(variable, Collections.singletonList(operation));
         } else {
-            Optional<Integer> siteId = siteManager.getReadLock(variableName, operation.getTransactionId());
+            Optional<Integer> siteId = siteManager.getReadLock(variable, operation.getTransactionId());
 
             if (!siteId.isPresent()) {
                 return;
             }
 
-            List<Operation> readOperations = waitQueueManager.pollUntilNextWriteOperation(variableName);
+            List<Operation> readOperations = waitQueueManager.pollUntilNextWriteOperation(variable);
             ReadWriteTransaction readWriteTransaction;
             for (Operation op : readOperations) {
-                readWriteTransaction = (ReadWriteTransaction) transactionMap.get(op.getTransactionId());
-                readWriteTransaction.addReadLock(variableName, siteId.get());
+                // Each granted reader needs a lock of its own on the site, not only the first one
+                if (op != operation) {
+                    siteManager.getReadLockOnSite(variable, op.getTransactionId(), siteId.get());
+                }
+                flightRecorder.record(FlightRecorder.Event.READ_LOCK, tickTime, op.getTransactionId(), variable,
+                        siteId.get());
+                readWriteTransaction = (ReadWriteTransaction) transactions[op.getTransactionId()];
+                readWriteTransaction.addReadLock(variable, siteId.get());
                 readWriteTransaction.addAccessedSite(siteId.get());
-                Optional<Integer> value = siteManager.read(variableName, siteId.get());
-                System.out.println(variableName + ": " + value.get());
+                Optional<Integer> value = siteManager.read(variable, siteId.get());
+                output.println("x" + variable + ": " + value.get());
+                operationListener.readCompleted(op.getTransactionId(), variable, value.get());
             }
+            refreshWaitsForEdgesAfterGrant(variable, readOperations);
 
         }
     }
 
+    /**
+     * The granted transactions stop waiting for the variable, and the transactions still queued for it now wait for
+     * the new lock holders
+     */
+    private void refreshWaitsForEdgesAfterGrant(int variable, List<Operation> grantedOperations) {
+        if (!deadlockHandling.usesWaitsForGraph()) {
+            return;
+        }
+        Set<Integer> affectedTransactions = new LinkedHashSet<>();
+        for (Operation operation : grantedOperations) {
+            affectedTransactions.add(operation.getTransactionId());
+        }
+        for (Operation operation : waitQueueManager.getWaitingOperations(variable)) {
+            affectedTransactions.add(operation.getTransactionId());
+        }
+        refreshWaitsForEdges(affectedTransactions);
+    }
+
     /**
      * Releases all locks and waiting operations for Read Write transaction
      * @author Saumya
      */
     private void releaseResourcesOfReadWriteTransaction(ReadWriteTransaction readWriteTransaction) {
 
-        Set<String> writeLockVariablesSet = readWriteTransaction.getWriteLocks().keySet();
-        for (String writeLockVariable : writeLockVariablesSet) {
-            List<Integer> siteIdList = readWriteTransaction.getWriteLockSiteId(writeLockVariable);
-            for (Integer siteId : siteIdList) {
+        for (Map.Entry<Integer, int[]> writeLock : readWriteTransaction.getWriteLocks().entrySet()) {
+            int writeLockVariable = writeLock.getKey();
+            for (int siteId : writeLock.getValue()) {
                 siteManager.releaseWriteLock(writeLockVariable, siteId);
             }
             processWaitingOperationsIfAny(writeLockVariable);
         }
 
-        Set<String> readLockVariablesSet = readWriteTransaction.getReadLocks().keySet();
-        for (String readLockVariable : readLockVariablesSet) {
-            int siteId = readWriteTransaction.getReadLockSiteId(readLockVariable);
-            siteManager.releaseReadLock(readLockVariable, siteId, readWriteTransaction.getName());
+        for (Map.Entry<Integer, Integer> readLock : readWriteTransaction.getReadLocks().entrySet()) {
+            int readLockVariable = readLock.getKey();
+            siteManager.releaseReadLock(readLockVariable, readLock.getValue(), readWriteTransaction.getId());
             processWaitingOperationsIfAny(readLockVariable);
         }
     }
@@ -373,31 +875,37 @@ class TransactionManager {
      * Commits the given transaction if possible
      * @author Saumya
      */
-    private boolean commitTransaction(String transactionName, long tickTime) {
-        Transaction transaction = transactionMap.get(transactionName);
-        deadLockManager.removeNode(transactionName);
-        waitQueueManager.removeAllPendingOperationOfTransaction(transactionName);
+    private boolean commitTransaction(int transactionId, long tickTime) {
+        Transaction transaction = transactions[transactionId];
+        String transactionName = transaction.getName();
+        List<Integer> waitingVariables = waitQueueManager.getWaitingVariables(transactionId);
+        waitQueueManager.removeAllPendingOperationOfTransaction(transactionId);
 
+        boolean committed = true;
         if (transaction instanceof ReadWriteTransaction) {
             ReadWriteTransaction readWriteTransaction = (ReadWriteTransaction) transaction;
             if (!readWriteTransaction.isAborted()) {
                 siteManager.commitWrites(readWriteTransaction.getModifiedVariables(),
                         readWriteTransaction.getWriteLocks(), tickTime);
-                System.out.println(transactionName + " commits");
+                flightRecorder.record(FlightRecorder.Event.COMMIT, tickTime, transactionId,
+                        FlightRecorder.NO_VARIABLE, 0);
+                output.println(transactionName + " commits");
             } else {
-                System.out.println(transactionName + " aborts");
-                System.out.println("Reason for abortion: Site failure");
+                flightRecorder.record(FlightRecorder.Event.ABORT, tickTime, transactionId, FlightRecorder.NO_VARIABLE,
+                        AbortReason.SITE_FAILURE.ordinal());
+                output.println(transactionName + " aborts");
+                output.println("Reason for abortion: " + AbortReason.SITE_FAILURE.getDescription());
+                abortCounts[AbortReason.SITE_FAILURE.ordinal()]++;
             }
 
             releaseResourcesOfReadWriteTransaction(readWriteTransaction);
-
-            if (readWriteTransaction.isAborted()) {
-                return false;
-            }
+            committed = !readWriteTransaction.isAborted();
         } else {
-            System.out.println(transactionName + " commits");
+            flightRecorder.record(FlightRecorder.Event.COMMIT, tickTime, transactionId, FlightRecorder.NO_VARIABLE, 0);
+            output.println(transactionName + " commits");
         }
-        return true;
+        removeFromWaitsForGraph(transactionId, waitingVariables);
+        return committed;
     }
 
     /**
@@ -405,15 +913,14 @@ class TransactionManager {
      * @author Omkar
      */
     void checkTransactionsForAbortionAfterSiteFailure(int siteId) {
-        for (Transaction transaction : transactionMap.values()) {
-            if (transaction instanceof ReadOnlyTransaction) {
-                return;
+        for (Transaction transaction : transactions) {
+            if (!(transaction instanceof ReadWriteTransaction)) {
+                continue;
             }
             ReadWriteTransaction readWriteTransaction = (ReadWriteTransaction) transaction;
-            Set<Integer> sitesAccessed = readWriteTransaction.getSitesAccessed();
-            if (sitesAccessed.contains(siteId)) {
+            if (readWriteTransaction.hasAccessedSite(siteId)) {
                 readWriteTransaction.setAborted(true);
             }
         }
     }
-}
\ No newline at end of file
+}
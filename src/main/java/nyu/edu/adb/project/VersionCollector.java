@@ -0,0 +1,76 @@
+package nyu.edu.adb.project;
+
+/**
+ * Garbage collector of the version history. A pass prunes, on a bounded number of variables, the versions which no
+ * live or future read-only transaction can read: everything older than the newest version committed at or before the
+ * low-water mark, the begin tick of the oldest live read-only transaction. Consecutive passes continue where the
+ * previous one stopped, so the whole history is swept incrementally.
+ */
+class VersionCollector {
+    private final SiteManager siteManager;
+    private final int slotsPerPass;
+
+    private long passes;
+    private long reclaimedVersions;
+    private int lastPassReclaimedVersions;
+    private long lastPassNanos;
+    private long totalNanos;
+
+    /**
+     * @param siteManager sites whose versions are collected
+     * @param slotsPerPass number of variables visited by a pass, shared evenly by the sites
+     */
+    VersionCollector(SiteManager siteManager, int slotsPerPass) {
+        if (slotsPerPass <= 0) {
+            throw new IllegalArgumentException("slots per pass must be positive");
+        }
+        this.siteManager = siteManager;
+        this.slotsPerPass = slotsPerPass;
+    }
+
+    /**
+     * Runs one pass
+     * @param lowWaterMark begin tick of the oldest live read-only transaction
+     * @return number of versions removed by the pass
+     */
+    int collect(long lowWaterMark) {
+        long startTime = System.nanoTime();
+        int reclaimed = siteManager.collectVersions(lowWaterMark, slotsPerPass);
+        lastPassNanos = System.nanoTime() - startTime;
+        lastPassReclaimedVersions = reclaimed;
+        totalNanos += lastPassNanos;
+        reclaimedVersions += reclaimed;
+        passes++;
+        return reclaimed;
+    }
+
+    long getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return number of versions removed by all passes
+     */
+    long getReclaimedVersions() {
+        return reclaimedVersions;
+    }
+
+    int getLastPassReclaimedVersions() {
+        return lastPassReclaimedVersions;
+    }
+
+    long getLastPassNanos() {
+        return lastPassNanos;
+    }
+
+    long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return passes + " version collection passes reclaimed " + reclaimedVersions + " versions in "
+                + totalNanos / 1_000 + " us, last pass reclaimed " + lastPassReclaimedVersions + " in "
+                + lastPassNanos / 1_000 + " us";
+    }
+}
@@ -0,0 +1,114 @@
+package nyu.edu.adb.project;
+
+import java.util.Arrays;
+
+/**
+ * Committed versions of the variables of a site. The versions of every slot are kept in a pair of parallel arrays,
+ * commit ticks in a long[] and values in an int[], ordered by tick. Versions are appended as they are committed and
+ * looked up by binary search, so a version costs 12 bytes plus the slack of the growing arrays.
+ */
+class VersionStore {
+    static final int NO_VERSION = -1;
+
+    private static final long[] NO_TICKS = new long[0];
+    private static final int[] NO_VALUES = new int[0];
+
+    private final long[][] ticks;
+    private final int[][] values;
+    private final int[] counts;
+
+    /**
+     * @param numberOfSlots number of variables of the site
+     */
+    VersionStore(int numberOfSlots) {
+        ticks = new long[numberOfSlots][];
+        values = new int[numberOfSlots][];
+        counts = new int[numberOfSlots];
+        Arrays.fill(ticks, NO_TICKS);
+        Arrays.fill(values, NO_VALUES);
+    }
+
+    /**
+     * Adds a version committed at the given tick. A second version at the tick of the newest one replaces it.
+     * @throws IllegalArgumentException if the tick is older than the newest version of the slot
+     */
+    void append(int slot, long tick, int value) {
+        int count = counts[slot];
+        if (count > 0) {
+            long newestTick = ticks[slot][count - 1];
+            if (tick == newestTick) {
+                values[slot][count - 1] = value;
+                return;
+            }
+            if (tick < newestTick) {
+                throw new IllegalArgumentException("Version at tick " + tick + " is older than the newest version at "
+                        + newestTick);
+            }
+        }
+        if (count == ticks[slot].length) {
+            int capacity = count + Math.max(1, count >> 1);
+            ticks[slot] = Arrays.copyOf(ticks[slot], capacity);
+            values[slot] = Arrays.copyOf(values[slot], capacity);
+        }
+        ticks[slot][count] = tick;
+        values[slot][count] = value;
+        counts[slot] = count + 1;
+    }
+
+    /**
+     * Returns the index of the newest version of the slot committed at or before the given tick
+     * @return index of the version or NO_VERSION if all versions are newer
+     */
+    int floor(int slot, long tick) {
+        long[] slotTicks = ticks[slot];
+        int low = 0;
+        int high = counts[slot] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (slotTicks[middle] <= tick) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= 0 ? high : NO_VERSION;
+    }
+
+    /**
+     * Removes the versions of the slot which are older than the newest version committed at or before the given
+     * tick. That version stays readable for snapshots taken at or after the tick.
+     * @param lowWaterMark oldest tick a snapshot may still be taken at
+     * @return number of removed versions
+     */
+    int prune(int slot, long lowWaterMark) {
+        int oldest = floor(slot, lowWaterMark);
+        if (oldest <= 0) {
+            return 0;
+        }
+        int remaining = counts[slot] - oldest;
+        if (remaining < ticks[slot].length >> 2) {
+            ticks[slot] = Arrays.copyOfRange(ticks[slot], oldest, oldest + remaining);
+            values[slot] = Arrays.copyOfRange(values[slot], oldest, oldest + remaining);
+        } else {
+            System.arraycopy(ticks[slot], oldest, ticks[slot], 0, remaining);
+            System.arraycopy(values[slot], oldest, values[slot], 0, remaining);
+        }
+        counts[slot] = remaining;
+        return oldest;
+    }
+
+    long getTick(int slot, int version) {
+        return ticks[slot][version];
+    }
+
+    int getValue(int slot, int version) {
+        return values[slot][version];
+    }
+
+    /**
+     * @return number of versions kept for the slot
+     */
+    int getVersionCount(int slot) {
+        return counts[slot];
+    }
+}
@@ -0,0 +1,115 @@
+package nyu.edu.adb.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Decides which transactions are aborted to break the deadlocks found in the waits-for graph
+ */
+interface VictimPolicy {
+
+    /**
+     * Chooses transactions to abort. The waits-for graph is searched again after the victims are aborted, so a policy
+     * may leave some of the cycles to the next search.
+     * @param cycles cycles found in the waits-for graph, as lists of transaction ids
+     * @param transactions live transactions by id
+     * @return distinct ids of the transactions to abort, at least one
+     */
+    List<Integer> chooseVictims(List<List<Integer>> cycles, IntFunction<Transaction> transactions);
+
+    /**
+     * Aborts the youngest transaction of all cycles, one at a time
+     */
+    static VictimPolicy youngest() {
+        return (cycles, transactions) -> {
+            int youngestTransaction = -1;
+            long youngestBeginTime = Long.MIN_VALUE;
+            for (List<Integer> cycle : cycles) {
+                for (int transactionId : cycle) {
+                    long beginTime = transactions.apply(transactionId).getBeginTime();
+                    if (beginTime > youngestBeginTime) {
+                        youngestBeginTime = beginTime;
+                        youngestTransaction = transactionId;
+                    }
+                }
+            }
+            return Collections.singletonList(youngestTransaction);
+        };
+    }
+
+    /**
+     * Cost based policy with default weights: a held lock costs 4, a buffered write 2, a tick of age 1 and an
+     * earlier abort of the same transaction 8
+     */
+    static VictimPolicy costBased() {
+        return costBased(4, 2, 1, 8);
+    }
+
+    /**
+     * Breaks all cycles in one pass with a set of victims which wastes little work. The cost of aborting a
+     * transaction grows with the locks it holds, its buffered writes, its age relative to the youngest transaction
+     * in the cycles and the number of times it was aborted before, which keeps it from starving. Victims are chosen
+     * greedily by the lowest cost per cycle broken, which favours transactions on many cycles.
+     * @param lockWeight cost of a read or write lock
+     * @param writeWeight cost of a buffered write
+     * @param ageWeight cost of a tick of age
+     * @param restartWeight cost of an earlier abort
+     */
+    static VictimPolicy costBased(double lockWeight, double writeWeight, double ageWeight, double restartWeight) {
+        return (cycles, transactions) -> {
+            Map<Integer, Double> costs = new LinkedHashMap<>();
+            long youngestBeginTime = Long.MIN_VALUE;
+            for (List<Integer> cycle : cycles) {
+                for (int transactionId : cycle) {
+                    youngestBeginTime = Math.max(youngestBeginTime,
+                            transactions.apply(transactionId).getBeginTime());
+                }
+            }
+            for (List<Integer> cycle : cycles) {
+                for (int transactionId : cycle) {
+                    if (costs.containsKey(transactionId)) {
+                        continue;
+                    }
+                    Transaction transaction = transactions.apply(transactionId);
+                    double cost = 1 + ageWeight * (youngestBeginTime - transaction.getBeginTime());
+                    if (transaction instanceof ReadWriteTransaction) {
+                        ReadWriteTransaction readWriteTransaction = (ReadWriteTransaction) transaction;
+                        cost += lockWeight * (readWriteTransaction.getReadLocks().size()
+                                + readWriteTransaction.getWriteLocks().size());
+                        cost += writeWeight * readWriteTransaction.getModifiedVariables().size();
+                        cost += restartWeight * readWriteTransaction.getRestartCount();
+                    }
+                    costs.put(transactionId, cost);
+                }
+            }
+
+            List<Integer> victims = new ArrayList<>();
+            List<List<Integer>> unbroken = new ArrayList<>(cycles);
+            while (!unbroken.isEmpty()) {
+                Map<Integer, Integer> cyclesBroken = new LinkedHashMap<>();
+                for (List<Integer> cycle : unbroken) {
+                    for (int transactionId : cycle) {
+                        cyclesBroken.merge(transactionId, 1, Integer::sum);
+                    }
+                }
+                int victim = -1;
+                double lowestCost = Double.MAX_VALUE;
+                for (Map.Entry<Integer, Integer> entry : cyclesBroken.entrySet()) {
+                    double cost = costs.get(entry.getKey()) / entry.getValue();
+                    if (cost < lowestCost) {
+                        lowestCost = cost;
+                        victim = entry.getKey();
+                    }
+                }
+                victims.add(victim);
+                int chosen = victim;
+                unbroken.removeIf(cycle -> cycle.contains(chosen));
+            }
+            return victims;
+        };
+    }
+}
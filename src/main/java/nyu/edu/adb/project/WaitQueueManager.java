@@ -1,59 +1,90 @@
 package nyu.edu.adb.project;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Wait queues of the variables. Every queue is a doubly linked list threaded through its operations, and the waiting
+ * operations of every transaction are threaded into a second list, so removing the operations of a transaction only
+ * visits that transaction's operations.
+ * <p>
+ * The writes of a queue are also chained to each other, and every queue counts its writes and the readers after its
+ * last write, so questions about the shape of a queue are answered without scanning it.
+ */
 class WaitQueueManager {
-    private Map<String, List<Operation>> variableWaitQueueMap;
+    private WaitQueue[] waitQueues;
+    private Operation[] operationsOfTransaction;
+
+    /**
+     * Head and tail of the wait queue of one variable
+     */
+    private static class WaitQueue {
+        private Operation head;
+        private Operation tail;
+        private Operation lastWrite;
+        private int writeCount;
+        private int trailingReaders;
+        private long nextSequence;
+    }
 
     WaitQueueManager() {
-        variableWaitQueueMap = new HashMap<>();
+        waitQueues = new WaitQueue[32];
+        operationsOfTransaction = new Operation[16];
     }
 
     /**
-     * Removes and returns the first waiting operation from the queue of a particular variable if any
-     * @param transactionName name of the transaction
+     * Removes all waiting operations of the given transaction from the wait queues
+     * @param transactionId id of the transaction
      * @author Saumya
      */
-    void removeAllPendingOperationOfTransaction(String transactionName) {
-        for (String variableName: variableWaitQueueMap.keySet()) {
-            List<Operation> waitingOperations = variableWaitQueueMap.get(variableName);
-            waitingOperations = waitingOperations.stream()
-                    .filter(op -> !op.getTransactionId().equals(transactionName))
-                    .collect(Collectors.toList());
-            variableWaitQueueMap.put(variableName, waitingOperations);
+    void removeAllPendingOperationOfTransaction(int transactionId) {
+        if (transactionId >= operationsOfTransaction.length) {
+            return;
+        }
+        Operation operation = operationsOfTransaction[transactionId];
+        operationsOfTransaction[transactionId] = null;
+        while (operation != null) {
+            Operation nextOfTransaction = operation.nextOfTransaction;
+            unlinkFromQueue(waitQueues[operation.getVariable()], operation);
+            operation.previousOfTransaction = null;
+            operation.nextOfTransaction = null;
+            operation = nextOfTransaction;
         }
     }
 
     /**
      * Removes and returns the first waiting operation from the queue of a particular variable if any
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return First waiting Operation object if any
      * @author Saumya
      */
-    Optional<Operation> pollNextWaitingOperation(String variableName) {
-        List<Operation> waitQueue = variableWaitQueueMap.getOrDefault(variableName, new ArrayList<>());
-        if (!waitQueue.isEmpty()) {
-            return Optional.of(waitQueue.remove(0));
+    Optional<Operation> pollNextWaitingOperation(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
+        if (waitQueue == null || waitQueue.head == null) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        Operation operation = waitQueue.head;
+        remove(waitQueue, operation);
+        return Optional.of(operation);
     }
 
     /**
      * Returns a list of all the operations from the queue until a write operation is found
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return List of Operations until next write operation
      * @author Saumya
      */
-    List<Operation> pollUntilNextWriteOperation(String variableName) {
-        List<Operation> waitQueue = variableWaitQueueMap.getOrDefault(variableName, new ArrayList<>());
+    List<Operation> pollUntilNextWriteOperation(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
         List<Operation> readOperations = new ArrayList<>();
-        while(!waitQueue.isEmpty()) {
-            Operation operation = waitQueue.get(0);
+        if (waitQueue == null) {
+            return readOperations;
+        }
+        while (waitQueue.head != null) {
+            Operation operation = waitQueue.head;
             if (operation.getOperationType().equals(Operation.OperationType.WRITE)) {
                 break;
             }
-            waitQueue.remove(0);
+            remove(waitQueue, operation);
             readOperations.add(operation);
         }
         return readOperations;
@@ -61,104 +92,241 @@ class WaitQueueManager {
 
     /**
      * Returns the first waiting operation without removing it from the queue of a particular variable if any
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return Next waiting Operation in the queue if any
      * @author Saumya
      */
-    Optional<Operation> peekAtNextWaitingOperation(String variableName) {
-        List<Operation> waitQueue = variableWaitQueueMap.getOrDefault(variableName, new ArrayList<>());
-        if (waitQueue.isEmpty()) {
+    Optional<Operation> peekAtNextWaitingOperation(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
+        if (waitQueue == null || waitQueue.head == null) {
             return Optional.empty();
         }
-        return Optional.of(waitQueue.get(0));
+        return Optional.of(waitQueue.head);
     }
 
     /**
      * Returns true if a write operation is already waiting for the given variable
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return true if a write operation is already waiting for the given variable, false otherwise
      * @author Saumya
      */
-    boolean precedingWriteOperationExists(String variableName) {
-        List<Operation> waitQueue = variableWaitQueueMap.getOrDefault(variableName, new ArrayList<>());
-        for (Operation op: waitQueue) {
-            if (op.getOperationType().equals(Operation.OperationType.WRITE)) {
-                return true;
-            }
-        }
-        return false;
+    boolean precedingWriteOperationExists(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
+        return waitQueue != null && waitQueue.writeCount > 0;
     }
 
     /**
      * Returns true if some operation is waiting for the given variable
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return true if some operation is waiting for the given variable, false otherwise.
      * @author Saumya
      */
-    boolean isOperationAlreadyWaiting(String variableName) {
-        if (variableWaitQueueMap.containsKey(variableName)) {
-            return !variableWaitQueueMap.get(variableName).isEmpty();
-        }
-        return false;
+    boolean isOperationAlreadyWaiting(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
+        return waitQueue != null && waitQueue.head != null;
     }
 
     /**
      * Adds the given operation to the wait queue of the given variable
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @param operation Operation to be added
      * @author Saumya
      */
-    void addWaitingOperation(String variableName, Operation operation) {
-        List<Operation> waitQueue = variableWaitQueueMap
-                .getOrDefault(variableName, new ArrayList<Operation>());
-        waitQueue.add(operation);
-        variableWaitQueueMap.put(variableName, waitQueue);
+    void addWaitingOperation(int variable, Operation operation) {
+        if (variable >= waitQueues.length) {
+            waitQueues = Arrays.copyOf(waitQueues, Math.max(variable + 1, waitQueues.length * 2));
+        }
+        WaitQueue waitQueue = waitQueues[variable];
+        if (waitQueue == null) {
+            waitQueue = new WaitQueue();
+            waitQueues[variable] = waitQueue;
+        }
+        operation.previous = waitQueue.tail;
+        operation.next = null;
+        if (waitQueue.tail == null) {
+            waitQueue.head = operation;
+        } else {
+            waitQueue.tail.next = operation;
+        }
+        waitQueue.tail = operation;
+        operation.sequence = waitQueue.nextSequence++;
+        if (isWrite(operation)) {
+            operation.previousWrite = waitQueue.lastWrite;
+            operation.nextWrite = null;
+            if (waitQueue.lastWrite != null) {
+                waitQueue.lastWrite.nextWrite = operation;
+            }
+            waitQueue.lastWrite = operation;
+            waitQueue.writeCount++;
+            waitQueue.trailingReaders = 0;
+        } else {
+            waitQueue.trailingReaders++;
+        }
+
+        int transactionId = operation.getTransactionId();
+        if (transactionId >= operationsOfTransaction.length) {
+            operationsOfTransaction = Arrays.copyOf(operationsOfTransaction,
+                    Math.max(transactionId + 1, operationsOfTransaction.length * 2));
+        }
+        Operation first = operationsOfTransaction[transactionId];
+        operation.previousOfTransaction = null;
+        operation.nextOfTransaction = first;
+        if (first != null) {
+            first.previousOfTransaction = operation;
+        }
+        operationsOfTransaction[transactionId] = operation;
     }
 
     /**
      * Returns the id of the transaction that has the last waiting operation for the given variable if any
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return the id of the transaction that has the last waiting operation for the given variable if any
      * @author Saumya
      */
-    Optional<String> getLastWriteTransaction(String variableName) {
-
-        List<Operation> list = variableWaitQueueMap.getOrDefault(variableName, new ArrayList<>());
-        for(int i=list.size()-1; i>=0;i--) {
-            Operation operation = list.get(i);
-            if (operation.getOperationType().equals(Operation.OperationType.WRITE)) {
-                return Optional.of(operation.getTransactionId());
-            }
+    Optional<Integer> getLastWriteTransaction(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
+        if (waitQueue == null || waitQueue.lastWrite == null) {
+            return Optional.empty();
         }
-
-        return Optional.empty();
+        return Optional.of(waitQueue.lastWrite.getTransactionId());
     }
 
     /**
      * Returns all the transaction ids that has a waiting write operation on the given variable
-     * @param variableName name of the variable
+     * @param variable index of the variable
      * @return List of all the transaction ids that has a waiting write operation on the given variable
      * @author Saumya
      */
-    List<String> getQueueHoldersForWriteOperation(String variableName) {
-        List<String> queueHolders = new ArrayList<>();
-        if (variableWaitQueueMap.containsKey(variableName)
-                && variableWaitQueueMap.get(variableName).size()>0) {
-            List<Operation> list = variableWaitQueueMap.get(variableName);
-            Operation op = list.get(list.size()-1);
-            if (op.getOperationType().equals(Operation.OperationType.WRITE)) {
-                queueHolders.add(op.getTransactionId());
-                return queueHolders;
-            }
-            for(int i=list.size()-1; i>=0;i--) {
-                Operation operation = list.get(i);
-                if (operation.getOperationType().equals(Operation.OperationType.WRITE)) {
-                    break;
-                }
-                queueHolders.add(operation.getTransactionId());
-            }
+    List<Integer> getQueueHoldersForWriteOperation(int variable) {
+        WaitQueue waitQueue = getWaitQueue(variable);
+        if (waitQueue == null || waitQueue.tail == null) {
+            return new ArrayList<>();
+        }
+        if (waitQueue.trailingReaders == 0) {
+            List<Integer> queueHolders = new ArrayList<>(1);
+            queueHolders.add(waitQueue.lastWrite.getTransactionId());
             return queueHolders;
         }
+        List<Integer> queueHolders = new ArrayList<>(waitQueue.trailingReaders);
+        Operation operation = waitQueue.tail;
+        for (int i = 0; i < waitQueue.trailingReaders; i++) {
+            queueHolders.add(operation.getTransactionId());
+            operation = operation.previous;
+        }
         return queueHolders;
     }
+
+    /**
+     * @param transactionId id of the transaction
+     * @return true if the transaction has an operation waiting in some queue
+     */
+    boolean hasWaitingOperation(int transactionId) {
+        return transactionId < operationsOfTransaction.length && operationsOfTransaction[transactionId] != null;
+    }
+
+    /**
+     * @param transactionId id of the transaction
+     * @return the variables for which the transaction has a waiting operation
+     */
+    List<Integer> getWaitingVariables(int transactionId) {
+        List<Integer> variables = new ArrayList<>();
+        if (transactionId >= operationsOfTransaction.length) {
+            return variables;
+        }
+        for (Operation operation = operationsOfTransaction[transactionId]; operation != null;
+             operation = operation.nextOfTransaction) {
+            variables.add(operation.getVariable());
+        }
+        return variables;
+    }
+
+    /**
+     * @param variable index of the variable
+     * @return the operations waiting for the variable, in queue order
+     */
+    List<Operation> getWaitingOperations(int variable) {
+        List<Operation> operations = new ArrayList<>();
+        WaitQueue waitQueue = getWaitQueue(variable);
+        if (waitQueue != null) {
+            for (Operation operation = waitQueue.head; operation != null; operation = operation.next) {
+                operations.add(operation);
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * @param operation an operation which was added to a wait queue
+     * @return true if the operation is still waiting, false once it was polled or removed
+     */
+    boolean isWaiting(Operation operation) {
+        WaitQueue waitQueue = getWaitQueue(operation.getVariable());
+        return waitQueue != null && (waitQueue.head == operation || operation.previous != null);
+    }
+
+    private WaitQueue getWaitQueue(int variable) {
+        return variable < waitQueues.length ? waitQueues[variable] : null;
+    }
+
+    /**
+     * Unlinks the operation from the wait queue of its variable and from the operations of its transaction
+     */
+    private void remove(WaitQueue waitQueue, Operation operation) {
+        unlinkFromQueue(waitQueue, operation);
+        if (operation.previousOfTransaction == null) {
+            operationsOfTransaction[operation.getTransactionId()] = operation.nextOfTransaction;
+        } else {
+            operation.previousOfTransaction.nextOfTransaction = operation.nextOfTransaction;
+        }
+        if (operation.nextOfTransaction != null) {
+            operation.nextOfTransaction.previousOfTransaction = operation.previousOfTransaction;
+        }
+        operation.previousOfTransaction = null;
+        operation.nextOfTransaction = null;
+    }
+
+    private static void unlinkFromQueue(WaitQueue waitQueue, Operation operation) {
+        if (isWrite(operation)) {
+            unlinkWrite(waitQueue, operation);
+        } else if (waitQueue.lastWrite == null || operation.sequence > waitQueue.lastWrite.sequence) {
+            waitQueue.trailingReaders--;
+        }
+        if (operation.previous == null) {
+            waitQueue.head = operation.next;
+        } else {
+            operation.previous.next = operation.next;
+        }
+        if (operation.next == null) {
+            waitQueue.tail = operation.previous;
+        } else {
+            operation.next.previous = operation.previous;
+        }
+        operation.previous = null;
+        operation.next = null;
+    }
+
+    /**
+     * Unlinks a write from the write chain. If it was the last write, the readers between it and the write before it
+     * join the trailing readers.
+     */
+    private static void unlinkWrite(WaitQueue waitQueue, Operation write) {
+        if (write.previousWrite != null) {
+            write.previousWrite.nextWrite = write.nextWrite;
+        }
+        if (write.nextWrite != null) {
+            write.nextWrite.previousWrite = write.previousWrite;
+        } else {
+            waitQueue.lastWrite = write.previousWrite;
+            for (Operation operation = write.previous; operation != write.previousWrite; operation = operation.previous) {
+                waitQueue.trailingReaders++;
+            }
+        }
+        write.previousWrite = null;
+        write.nextWrite = null;
+        waitQueue.writeCount--;
+    }
+
+    private static boolean isWrite(Operation operation) {
+        return operation.getOperationType() == Operation.OperationType.WRITE;
+    }
 }
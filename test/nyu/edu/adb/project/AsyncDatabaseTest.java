@@ -0,0 +1,102 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncDatabaseTest {
+    @Test
+    void testPipelinedOperationsCompleteInOrder() throws Exception {
+        try (AsyncDatabase database = new AsyncDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+            int t1 = database.transaction("T1");
+            database.begin(t1);
+            CompletableFuture<Void> write = database.write(t1, 1, 11);
+            CompletableFuture<Integer> read = database.read(t1, 1);
+            CompletableFuture<Boolean> end = database.end(t1);
+            assertTrue(write.isDone());
+            assertEquals(11, read.join().intValue());
+            assertTrue(end.join());
+        }
+    }
+
+    @Test
+    void testQueuedReadCompletesWhenGranted() throws Exception {
+        try (AsyncDatabase database = new AsyncDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+            int t1 = database.transaction("T1");
+            int t2 = database.transaction("T2");
+            database.begin(t1);
+            database.begin(t2);
+            database.write(t1, 2, 22);
+            CompletableFuture<Integer> read = database.read(t2, 2);
+            CompletableFuture<Boolean> end = database.end(t2);
+            assertFalse(read.isDone());
+            assertFalse(end.isDone());
+
+            assertTrue(database.end(t1).join());
+            assertEquals(22, read.join().intValue());
+            assertTrue(end.join());
+        }
+    }
+
+    @Test
+    void testDeadlockVictimFailsPendingAndLaterOperations() throws Exception {
+        try (AsyncDatabase database = new AsyncDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+            int t1 = database.transaction("T1");
+            int t2 = database.transaction("T2");
+            database.begin(t1);
+            database.begin(t2);
+            database.write(t1, 1, 11);
+            database.write(t2, 3, 33);
+            CompletableFuture<Void> t1Write = database.write(t1, 3, 13);
+            CompletableFuture<Void> t2Write = database.write(t2, 1, 31);
+            CompletableFuture<Integer> t2Read = database.read(t2, 4);
+            CompletableFuture<Boolean> t2End = database.end(t2);
+            database.noOp();
+
+            CompletionException failure = assertThrows(CompletionException.class, t2Write::join);
+            assertTrue(failure.getCause() instanceof TransactionAbortedException);
+            failure = assertThrows(CompletionException.class, t2Read::join);
+            assertTrue(failure.getCause() instanceof TransactionAbortedException);
+            assertFalse(t2End.join());
+            assertTrue(t1Write.isDone());
+            assertTrue(database.end(t1).join());
+        }
+    }
+
+    @Test
+    void testRejectedOperationFailsWithoutStallingPipeline() throws Exception {
+        try (AsyncDatabase database = new AsyncDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+            int t1 = database.transaction("T1");
+            database.begin(t1);
+            CompletableFuture<Void> write = database.write(t1, database.variable("x999"), 1);
+            CompletableFuture<Integer> read = database.read(t1, 1);
+            CompletableFuture<Boolean> end = database.end(t1);
+
+            CompletionException failure = assertThrows(CompletionException.class, write::join);
+            assertTrue(failure.getCause() instanceof IllegalArgumentException);
+            assertEquals(10, read.join().intValue());
+            assertTrue(end.join());
+        }
+    }
+
+    @Test
+    void testOperationsOfTransactionNotBegunFail() throws Exception {
+        try (AsyncDatabase database = new AsyncDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+            int t1 = database.transaction("T1");
+            CompletableFuture<Integer> read = database.read(t1, 1);
+            CompletableFuture<Boolean> end = database.end(t1);
+
+            CompletionException failure = assertThrows(CompletionException.class, read::join);
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+            failure = assertThrows(CompletionException.class, end::join);
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+
+            database.begin(t1);
+            database.write(t1, 1, 11);
+            assertTrue(database.end(t1).join());
+        }
+    }
+}
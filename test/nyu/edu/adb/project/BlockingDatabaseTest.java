@@ -0,0 +1,86 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingDatabaseTest {
+    private static void await(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CompletableFuture<Void> incrementUntilCommitted(BlockingDatabase database, String client,
+                                                                   int variable) {
+        return database.run(client, false, session -> session.write(variable, session.read(variable) + 1))
+                .thenCompose(committed -> committed ? CompletableFuture.completedFuture(null)
+                        : incrementUntilCommitted(database, client, variable));
+    }
+
+    @Test
+    void testCrossedWritesAbortOneTransaction() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (BlockingDatabase database = new BlockingDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+                CountDownLatch firstWrites = new CountDownLatch(2);
+                CompletableFuture<Boolean> t1 = database.run("T1", false, session -> {
+                    session.write(1, 101);
+                    await(firstWrites);
+                    session.write(2, 102);
+                });
+                CompletableFuture<Boolean> t2 = database.run("T2", false, session -> {
+                    session.write(2, 202);
+                    await(firstWrites);
+                    session.write(1, 201);
+                });
+                assertTrue(t1.join() ^ t2.join());
+
+                int expected = t1.join() ? 101 : 201;
+                CompletableFuture<Integer> read = new CompletableFuture<>();
+                assertTrue(database.run("T3", true, session -> read.complete(session.read(1))).join());
+                assertEquals(expected, read.join().intValue());
+            }
+        });
+    }
+
+    @Test
+    void testContendedIncrementsAreNotLost() {
+        int clients = 100;
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            try (BlockingDatabase database = new BlockingDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+                List<CompletableFuture<Void>> increments = new ArrayList<>();
+                for (int client = 0; client < clients; client++) {
+                    increments.add(incrementUntilCommitted(database, "C" + client, 2));
+                }
+                CompletableFuture.allOf(increments.toArray(new CompletableFuture<?>[0])).join();
+
+                CompletableFuture<Integer> read = new CompletableFuture<>();
+                assertTrue(database.run("R", true, session -> read.complete(session.read(2))).join());
+                assertEquals(20 + clients, read.join().intValue());
+            }
+        });
+    }
+
+    @Test
+    void testBodyFailureAbortsTransaction() {
+        try (BlockingDatabase database = new BlockingDatabase(DatabaseConfig.defaults(), OutputSink.none())) {
+            CompletableFuture<Boolean> failed = database.run("T1", false, session -> {
+                session.write(4, 0);
+                throw new IllegalStateException("client failure");
+            });
+            assertThrows(Exception.class, failed::join);
+            CompletableFuture<Integer> read = new CompletableFuture<>();
+            assertTrue(database.run("T2", false, session -> read.complete(session.read(4))).join());
+            assertEquals(40, read.join().intValue());
+        }
+    }
+}
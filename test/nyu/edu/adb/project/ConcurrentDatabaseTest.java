@@ -0,0 +1,120 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentDatabaseTest {
+    private static final int THREADS = 4;
+
+    private static int count(String output, String suffix) {
+        int count = 0;
+        for (String line : output.split("\n")) {
+            if (line.endsWith(suffix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void runOnThreads(Client client) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int clientId = thread;
+                futures.add(executor.submit(() -> {
+                    client.run(clientId);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private interface Client {
+        void run(int clientId) throws Exception;
+    }
+
+    @Test
+    void testTransactionsOnDisjointVariablesCommitOnAllThreads() throws Exception {
+        int transactionsPerThread = 200;
+        StringBuilder output = new StringBuilder();
+        OutputSink sink = OutputSink.buffered(output);
+        try (ConcurrentDatabase database = new ConcurrentDatabase(DatabaseConfig.defaults(), sink)) {
+            runOnThreads(clientId -> {
+                int transaction = database.transaction("T" + clientId);
+                for (int i = 0; i < transactionsPerThread; i++) {
+                    database.begin(transaction);
+                    for (int variable = clientId + 1; variable <= 20; variable += THREADS) {
+                        database.write(transaction, variable, 1000 * clientId + i);
+                        database.read(transaction, variable);
+                        assertFalse(database.isWaiting(transaction));
+                    }
+                    database.end(transaction);
+                }
+            });
+            sink.flush();
+            output.setLength(0);
+            int reader = database.transaction("R");
+            database.beginRO(reader);
+            for (int variable = 1; variable <= 20; variable++) {
+                database.read(reader, variable);
+            }
+        }
+        for (int variable = 1; variable <= 20; variable++) {
+            int clientId = (variable - 1) % THREADS;
+            assertTrue(output.toString().contains("x" + variable + ": " + (1000 * clientId + transactionsPerThread - 1) + "\n"));
+        }
+    }
+
+    @Test
+    void testContendedTransactionsAllEnd() {
+        int transactionsPerThread = 100;
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            int ended;
+            StringBuilder output = new StringBuilder();
+            OutputSink sink = OutputSink.buffered(output);
+            try (ConcurrentDatabase database = new ConcurrentDatabase(DatabaseConfig.defaults(), sink)) {
+                runOnThreads(clientId -> {
+                    SplittableRandom random = new SplittableRandom(clientId);
+                    int transaction = database.transaction("T" + clientId);
+                    for (int i = 0; i < transactionsPerThread; i++) {
+                        database.begin(transaction);
+                        for (int operation = 0; operation < 3 && database.isActive(transaction); operation++) {
+                            int variable = 1 + random.nextInt(4);
+                            if (random.nextBoolean()) {
+                                database.write(transaction, variable, i);
+                            } else {
+                                database.read(transaction, variable);
+                            }
+                            while (database.isWaiting(transaction)) {
+                                database.noOp();
+                            }
+                        }
+                        if (database.isActive(transaction)) {
+                            database.end(transaction);
+                        }
+                    }
+                });
+                sink.flush();
+                ended = count(output.toString(), " commits") + database.getAbortCount(AbortReason.DEADLOCK);
+            }
+            assertEquals(THREADS * transactionsPerThread, ended);
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataManagerTest {
+
+    private static DataManager dataManagerHolding(int... variables) {
+        long[] hostedVariables = new long[4];
+        for (int variable : variables) {
+            hostedVariables[variable >>> 6] |= 1L << variable;
+        }
+        return new DataManager(hostedVariables);
+    }
+
+    @Test
+    void testValuesAreStoredPerHostedVariable() {
+        DataManager dataManager = dataManagerHolding(2, 63, 64, 65, 200);
+        for (int variable : new int[]{2, 63, 64, 65, 200}) {
+            dataManager.initializeVar(variable, variable * 10);
+        }
+        dataManager.write(64, 7, 3);
+
+        assertEquals(20, dataManager.read(2));
+        assertEquals(630, dataManager.read(63));
+        assertEquals(7, dataManager.read(64));
+        assertEquals(650, dataManager.read(65));
+        assertEquals(2000, dataManager.read(200));
+        assertTrue(dataManager.hasVariable(200));
+        assertFalse(dataManager.hasVariable(3));
+        assertFalse(dataManager.hasVariable(1000));
+        assertThrows(RuntimeException.class, () -> dataManager.read(3));
+    }
+
+    @Test
+    void testStaleVariablesBecomeSafeAfterWrite() {
+        DataManager dataManager = dataManagerHolding(4, 6, 130);
+        dataManager.initializeVar(4, 40);
+        dataManager.initializeVar(6, 60);
+        dataManager.initializeVar(130, 1300);
+        dataManager.addVariableToStaleSet(6);
+        dataManager.addVariableToStaleSet(130);
+
+        assertTrue(dataManager.isVariableSafeForRead(4));
+        assertFalse(dataManager.isVariableSafeForRead(6));
+        dataManager.write(6, 61, 5);
+        assertTrue(dataManager.isVariableSafeForRead(6));
+        assertFalse(dataManager.isVariableSafeForRead(130));
+
+        dataManager.clearStaleSet();
+        assertTrue(dataManager.isVariableSafeForRead(130));
+        assertThrows(RuntimeException.class, () -> dataManager.addVariableToStaleSet(5));
+    }
+}
@@ -2,7 +2,12 @@ package nyu.edu.adb.project;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class DeadLockManagerTest {
 
@@ -10,15 +15,124 @@ class DeadLockManagerTest {
 
     @Test
     void testingCycleDetection() {
-        deadLockManager.addEdge("1", "2");
-        deadLockManager.addEdge("2", "3");
-        deadLockManager.addEdge("3", "1");
-        deadLockManager.addEdge("1", "4");
-        deadLockManager.addEdge("4", "5");
-        deadLockManager.addEdge("5", "6");
-        deadLockManager.addEdge("6", "4");
+        deadLockManager.addEdge(1, 2);
+        deadLockManager.addEdge(2, 3);
+        deadLockManager.addEdge(3, 1);
+        deadLockManager.addEdge(1, 4);
+        deadLockManager.addEdge(4, 5);
+        deadLockManager.addEdge(5, 6);
+        deadLockManager.addEdge(6, 4);
 
         deadLockManager.getDeadLockCycles();
     }
 
-}
\ No newline at end of file
+    @Test
+    void testCycleThroughVertexOfEarlierCycleIsNotReported() {
+        deadLockManager.addEdge(1, 2);
+        deadLockManager.addEdge(2, 1);
+        deadLockManager.addEdge(3, 2);
+
+        List<List<Integer>> cycles = deadLockManager.getDeadLockCycles();
+        assertFalse(cycles.isEmpty());
+        for (List<Integer> cycle : cycles) {
+            assertFalse(cycle.contains(null));
+            assertFalse(cycle.contains(3));
+        }
+    }
+
+    @Test
+    void testEveryNewCycleIsReported() {
+        deadLockManager.addEdge(1, 2);
+        deadLockManager.addEdge(2, 3);
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+
+        deadLockManager.addEdge(3, 1);
+        deadLockManager.addEdge(4, 5);
+        deadLockManager.addEdge(5, 4);
+        // One cycle for every edge closing a cycle
+        List<List<Integer>> cycles = deadLockManager.getDeadLockCycles();
+        assertEquals(3, cycles.size());
+        assertEquals(Arrays.asList(1, 2, 3), cycles.get(0));
+        assertEquals(Arrays.asList(5, 4), cycles.get(1));
+        assertEquals(Arrays.asList(4, 5), cycles.get(2));
+
+        // Cycles are reported until they are broken
+        deadLockManager.removeNode(2);
+        assertEquals(Arrays.asList(5, 4), deadLockManager.getDeadLockCycles().get(0));
+        deadLockManager.removeEdge(5, 4);
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+    }
+
+    @Test
+    void testRemovingVictimKeepsOtherCycleThroughSameEdge() {
+        deadLockManager.addEdge(1, 2);
+        deadLockManager.addEdge(2, 1);
+        deadLockManager.addEdge(2, 3);
+        deadLockManager.addEdge(3, 1);
+        assertFalse(deadLockManager.getDeadLockCycles().isEmpty());
+
+        deadLockManager.removeEdge(2, 1);
+        List<List<Integer>> cycles = deadLockManager.getDeadLockCycles();
+        assertEquals(3, cycles.size());
+        for (List<Integer> cycle : cycles) {
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), new HashSet<>(cycle));
+        }
+        deadLockManager.removeNode(3);
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+    }
+
+    @Test
+    void testLongWaitChain() {
+        int length = 200_000;
+        for (int t = 0; t < length; t++) {
+            deadLockManager.addEdge(t, t + 1);
+        }
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+        deadLockManager.addEdge(length, 0);
+        List<List<Integer>> cycles = deadLockManager.getDeadLockCycles();
+        assertEquals(1, cycles.size());
+        assertEquals(length + 1, cycles.get(0).size());
+    }
+
+    @Test
+    void testSnapshotIsSearchedIndependently() {
+        deadLockManager.addEdge(1, 2);
+        deadLockManager.addEdge(2, 3);
+        deadLockManager.addEdge(3, 1);
+        long modifications = deadLockManager.getModificationCount();
+
+        DeadLockManager snapshot = deadLockManager.snapshot();
+        deadLockManager.removeNode(2);
+        assertFalse(deadLockManager.hasEdge(1, 2));
+        assertTrue(snapshot.hasEdge(1, 2));
+        assertEquals(modifications, snapshot.getModificationCount());
+        assertEquals(modifications + 2, deadLockManager.getModificationCount());
+
+        // Every edge of a snapshot is pending, so each of them reports the cycle it closes
+        List<List<Integer>> cycles = snapshot.getDeadLockCycles();
+        assertEquals(3, cycles.size());
+        for (List<Integer> cycle : cycles) {
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), new HashSet<>(cycle));
+        }
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+    }
+
+    @Test
+    void testReplaceOutgoingEdgesKeepsExistingEdges() {
+        deadLockManager.addEdge(1, 2);
+        deadLockManager.addEdge(1, 3);
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+        deadLockManager.addEdge(3, 1);
+        deadLockManager.replaceOutgoingEdges(1, Arrays.asList(2, 4));
+        assertTrue(deadLockManager.hasEdge(1, 2));
+        assertFalse(deadLockManager.hasEdge(1, 3));
+        assertTrue(deadLockManager.hasEdge(1, 4));
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+
+        deadLockManager.addEdge(4, 1);
+        assertEquals(1, deadLockManager.getDeadLockCycles().size());
+        deadLockManager.replaceOutgoingEdges(1, Collections.emptyList());
+        assertFalse(deadLockManager.hasEdge(1, 2));
+        assertTrue(deadLockManager.getDeadLockCycles().isEmpty());
+    }
+}
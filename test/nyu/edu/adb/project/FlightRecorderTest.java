@@ -0,0 +1,51 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderTest {
+
+    @Test
+    void testFullRingKeepsLatestEvents() throws Exception {
+        FlightRecorder recorder = new FlightRecorder(3);
+        for (int tick = 1; tick <= 6; tick++) {
+            recorder.record(FlightRecorder.Event.COMMIT, tick, tick, FlightRecorder.NO_VARIABLE, 0);
+        }
+        StringBuilder out = new StringBuilder();
+        recorder.dump(out, id -> "T" + id);
+        assertEquals(6, recorder.getRecordedCount());
+        assertEquals("3 COMMIT T3\n4 COMMIT T4\n5 COMMIT T5\n6 COMMIT T6\n", out.toString());
+    }
+
+    @Test
+    void testDisabledRecorderRecordsNothing() throws Exception {
+        FlightRecorder recorder = new FlightRecorder(0);
+        recorder.record(FlightRecorder.Event.WAIT, 1, 1, 2, Operation.OperationType.READ.ordinal());
+        StringBuilder out = new StringBuilder();
+        recorder.dump(out, id -> "T" + id);
+        assertFalse(recorder.isEnabled());
+        assertEquals(0, recorder.getRecordedCount());
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    void testDatabaseRecordsGrantsWaitsAndAborts() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder().flightRecorderCapacity(64).build();
+        StringBuilder out = new StringBuilder();
+        try (Database database = new Database(config, OutputSink.none())) {
+            Driver.executeFromList(database, Arrays.asList("begin(T1)", "begin(T2)", "R(T1, x1)", "W(T2, x3, 33)",
+                    "W(T1, x3, 13)", "W(T2, x1, 21)", "end(T1)"));
+            database.dumpFlightRecorder(out);
+        }
+        assertEquals("3 READ_LOCK T1 x1 site 2\n"
+                + "4 WRITE_LOCK T2 x3 1 sites\n"
+                + "5 WAIT T1 x3 WRITE\n"
+                + "6 WAIT T2 x1 WRITE\n"
+                + "6 ABORT T2 Deadlock removal\n"
+                + "6 WRITE_LOCK T1 x3 1 sites\n"
+                + "7 COMMIT T1\n", out.toString());
+    }
+}
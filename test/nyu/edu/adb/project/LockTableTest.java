@@ -0,0 +1,89 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockTableTest {
+
+    LockTable lockTable = new LockTable();
+
+    @Test
+    void testWriteLockExcludesOtherTransactions() {
+        assertTrue(lockTable.addWriteLock(3, 1));
+        assertEquals(1, lockTable.getWriteLockHolder(3));
+        assertFalse(lockTable.addWriteLock(3, 2));
+        assertFalse(lockTable.addReadLock(3, 2));
+        assertTrue(lockTable.addReadLock(3, 1));
+        assertEquals(0, lockTable.getReadLockCount(3));
+
+        assertTrue(lockTable.releaseWriteLock(3));
+        assertFalse(lockTable.releaseWriteLock(3));
+        assertEquals(LockTable.NO_TRANSACTION, lockTable.getWriteLockHolder(3));
+        assertTrue(lockTable.addReadLock(3, 2));
+    }
+
+    @Test
+    void testReadLockPromotion() {
+        assertTrue(lockTable.addReadLock(4, 1));
+        assertTrue(lockTable.addReadLock(4, 1));
+        assertEquals(1, lockTable.getReadLockCount(4));
+        assertTrue(lockTable.isWriteLockAvailable(4, 1));
+        assertTrue(lockTable.addWriteLock(4, 1));
+        assertFalse(lockTable.isReadLockHolder(4, 1));
+        assertEquals(0, lockTable.getReadLockCount(4));
+
+        lockTable.releaseWriteLock(4);
+        lockTable.addReadLock(4, 1);
+        lockTable.addReadLock(4, 2);
+        assertFalse(lockTable.isWriteLockAvailable(4, 1));
+        assertFalse(lockTable.addWriteLock(4, 1));
+    }
+
+    @Test
+    void testReadersSpillToBitmap() {
+        for (int transactionId = 0; transactionId < 100; transactionId += 3) {
+            assertTrue(lockTable.addReadLock(7, transactionId));
+        }
+        assertEquals(34, lockTable.getReadLockCount(7));
+        assertTrue(lockTable.isReadLockHolder(7, 99));
+        assertFalse(lockTable.isReadLockHolder(7, 98));
+        int[] allHolders = new int[34];
+        assertEquals(34, lockTable.copyReadLockHolders(7, allHolders, 0));
+        assertEquals(34, Arrays.stream(allHolders).distinct().count());
+
+        for (int transactionId = 0; transactionId < 99; transactionId += 3) {
+            lockTable.releaseReadLock(7, transactionId);
+        }
+        int[] holders = new int[1];
+        assertEquals(1, lockTable.copyReadLockHolders(7, holders, 0));
+        assertArrayEquals(new int[]{99}, holders);
+        assertTrue(lockTable.isWriteLockAvailable(7, 99));
+
+        lockTable.releaseReadLock(7, 99);
+        assertTrue(lockTable.addReadLock(7, 5));
+        assertEquals(1, lockTable.copyReadLockHolders(7, holders, 0));
+        assertArrayEquals(new int[]{5}, holders);
+    }
+
+    @Test
+    void testTableGrowsAndClears() {
+        for (int variable = 1; variable <= 200; variable++) {
+            assertTrue(lockTable.addWriteLock(variable, variable % 7));
+            assertTrue(lockTable.addReadLock(variable + 1000, variable));
+        }
+        for (int variable = 1; variable <= 200; variable++) {
+            assertEquals(variable % 7, lockTable.getWriteLockHolder(variable));
+            assertTrue(lockTable.isReadLockHolder(variable + 1000, variable));
+        }
+
+        lockTable.clearLockTable();
+        for (int variable = 1; variable <= 200; variable++) {
+            assertEquals(LockTable.NO_TRANSACTION, lockTable.getWriteLockHolder(variable));
+            assertEquals(0, lockTable.getReadLockCount(variable + 1000));
+        }
+        assertEquals(0, lockTable.copyReadLockHolders(5000, new int[0], 0));
+    }
+}
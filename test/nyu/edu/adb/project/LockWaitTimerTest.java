@@ -0,0 +1,55 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockWaitTimerTest {
+
+    private static Operation waitUntil(int transactionId, long deadline) {
+        Operation operation = new Operation(transactionId, Operation.OperationType.READ, 1);
+        operation.deadline = deadline;
+        return operation;
+    }
+
+    @Test
+    void testOperationsExpireAtTheirDeadline() {
+        LockWaitTimer timer = new LockWaitTimer(5);
+        assertEquals(8, timer.getNumberOfSlots());
+        Operation first = waitUntil(1, 3);
+        Operation second = waitUntil(2, 3);
+        Operation third = waitUntil(3, 5);
+        timer.schedule(third);
+        timer.schedule(first);
+        timer.schedule(second);
+
+        assertTrue(timer.expire(2).isEmpty());
+        assertEquals(Arrays.asList(first, second), timer.expire(3));
+        assertEquals(Collections.singletonList(third), timer.expire(10));
+        assertTrue(timer.expire(20).isEmpty());
+    }
+
+    @Test
+    void testDeadlinesBeyondOneTurnOfTheWheel() {
+        LockWaitTimer timer = new LockWaitTimer(4);
+        Operation near = waitUntil(1, 2);
+        Operation far = waitUntil(2, 2 + 3 * timer.getNumberOfSlots());
+        timer.schedule(far);
+        timer.schedule(near);
+        assertEquals(Collections.singletonList(near), timer.expire(2));
+        for (long tick = 3; tick < far.deadline; tick++) {
+            assertTrue(timer.expire(tick).isEmpty());
+        }
+        List<Operation> expired = timer.expire(far.deadline);
+        assertEquals(Collections.singletonList(far), expired);
+
+        // A deadline which has passed expires at the next visit
+        Operation late = waitUntil(3, 1);
+        timer.schedule(late);
+        assertEquals(Collections.singletonList(late), timer.expire(far.deadline + 1));
+    }
+}
@@ -0,0 +1,55 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputSinkTest {
+
+    private static final List<String> INSTRUCTIONS = Arrays.asList("begin(T1)", "begin(T2)", "W(T1, x2, 22)",
+            "R(T2, x2)", "end(T1)", "end(T2)", "dump()");
+
+    @Test
+    void testBufferedSinksKeepOutputOfDatabasesApart() throws Exception {
+        StringBuilder first = new StringBuilder();
+        StringBuilder second = new StringBuilder();
+        try (Database one = new Database(DatabaseConfig.defaults(), OutputSink.buffered(first));
+             Database two = new Database(DatabaseConfig.defaults(), OutputSink.buffered(second))) {
+            Driver.executeFromList(one, INSTRUCTIONS);
+            Driver.executeFromList(two, Arrays.asList("begin(T3)", "R(T3, x1)", "end(T3)"));
+            assertEquals(0, first.length());
+        }
+        assertTrue(first.toString().startsWith("T1 commits\nx2: 22\nT2 commits\nsite 1 - x2:22, "));
+        assertEquals("x1: 10\nT3 commits\n", second.toString());
+    }
+
+    @Test
+    void testBinarySinkWritesBufferOnFlush() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputSink sink = new BinaryOutputSink(out, 16);
+        sink.println("T1 commits");
+        assertEquals(0, out.size());
+        sink.println("x2: 22");
+        assertEquals("T1 commits\nx2: 2", out.toString("US-ASCII"));
+        sink.flush();
+        assertEquals("T1 commits\nx2: 22\n", out.toString("US-ASCII"));
+    }
+
+    @Test
+    void testNoOutputSinkLeavesConsoleUntouched() throws Exception {
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(console, true));
+        try (Database database = new Database(DatabaseConfig.defaults(), OutputSink.none())) {
+            Driver.executeFromList(database, INSTRUCTIONS);
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertEquals(0, console.size());
+    }
+}
@@ -125,7 +125,7 @@ public class Test1 {
 
         String[] lines = filterLines(baos.toString().split("\n"));
         assertEquals("x2: 20", lines[0]);
-        assertTrue(database.transactionManager.abortedTransactions.contains("T1"));
+        assertTrue(database.transactionManager.hasAborted(database.transaction("T1")));
     }
 
     @Test
@@ -141,7 +141,7 @@ public class Test1 {
 
         String[] lines = filterLines(baos.toString().split("\n"));
         assertEquals("x2: 20", lines[0]);
-        assertFalse(database.transactionManager.abortedTransactions.contains("T1"));
+        assertFalse(database.transactionManager.hasAborted(database.transaction("T1")));
     }
 
     @Test
@@ -160,7 +160,7 @@ public class Test1 {
 
         String[] lines = filterLines(baos.toString().split("\n"));
         assertEquals("x2: 20", lines[0]);
-        assertTrue(database.transactionManager.abortedTransactions.contains("T1"));
+        assertTrue(database.transactionManager.hasAborted(database.transaction("T1")));
     }
 
     @Test
@@ -175,7 +175,24 @@ public class Test1 {
         Driver.executeFromList(database, instructions);
 
         String[] lines = filterLines(baos.toString().split("\n"));
-        assertFalse(database.transactionManager.abortedTransactions.contains("T1"));
+        assertFalse(database.transactionManager.hasAborted(database.transaction("T1")));
+    }
+
+    @Test
+    void testFailureAbortsWriterAfterReadOnlyTransaction() throws Exception {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("beginRO(T1)");
+        instructions.add("begin(T2)");
+        instructions.add("W(T2, x2, 1000)");
+        instructions.add("fail(1)");
+        instructions.add("end(T2)");
+        instructions.add("end(T1)");
+
+        Database database = new Database();
+        Driver.executeFromList(database, instructions);
+
+        // The read-only transaction met first must not stop the check of the others
+        assertTrue(database.transactionManager.hasAborted(database.transaction("T2")));
     }
 
     @Test
@@ -992,7 +1009,7 @@ public class Test1 {
         System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.out)));
         String[] lines = filterLines(baos.toString().split("\n"));
         System.out.println(Arrays.toString(lines));
-        assertTrue(database.transactionManager.abortedTransactions.contains("T4"));
+        assertTrue(database.transactionManager.hasAborted(database.transaction("T4")));
     }
 
     // T2 should abort, T1 should not, because of wait-die
@@ -1376,11 +1393,72 @@ public class Test1 {
         String[] lines = filterLines(baos.toString().split("\n"));
 //        System.out.println(Arrays.toString(lines));
         assertEquals("x1: 10", lines[0]);
-        assertEquals("x1: 50", lines[1]);
+        // T3 is aborted first, after which T1 waiting behind T2 and T2 waiting for the read lock of T1 is a second
+        // deadlock. T2 is aborted and the write of T1 goes through.
+        assertEquals("x1: 70", lines[1]);
 //        assertEquals("22", lines[2]);
 //        assertEquals("33", lines[3]);
     }
 
+    @Test
+    void testDeadlockLeftByAbortedVictimIsDetected() throws Exception {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("begin(T1)");
+        instructions.add("begin(T2)");
+        instructions.add("begin(T3)");
+        instructions.add("R(T1,x1)");
+        instructions.add("W(T2,x1,50)");
+        instructions.add("W(T3,x1,60)");
+        instructions.add("W(T1,x1,70)");
+        instructions.add("begin(T4)");
+        Driver.executeFromList(instructions);
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.out)));
+        String output = baos.toString();
+        // Both deadlocks are resolved in the same tick, before T1 ends
+        assertTrue(output.contains("T3 aborts"));
+        assertTrue(output.contains("T2 aborts"));
+    }
+
+    @Test
+    void testQueueOfAbortedVictimIsProcessed() throws Exception {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("begin(T1)");
+        instructions.add("begin(T2)");
+        instructions.add("begin(T3)");
+        instructions.add("R(T1,x1)");
+        instructions.add("W(T2,x2,20)");
+        instructions.add("W(T2,x1,21)");
+        instructions.add("R(T3,x1)");
+        instructions.add("W(T1,x2,22)");
+        instructions.add("begin(T4)");
+        Driver.executeFromList(instructions);
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.out)));
+        String output = baos.toString();
+        // The read of T3 queued behind the write of T2 is granted when T2 is aborted, not when T1 ends
+        assertTrue(output.contains("T2 aborts"));
+        assertArrayEquals(new String[]{"x1: 10", "x1: 10"}, filterLines(output.split("\n")));
+    }
+
+    @Test
+    void testWriteLockHolderWritesAgainWithoutWaiting() throws Exception {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("begin(T1)");
+        instructions.add("begin(T2)");
+        instructions.add("W(T1,x1,5)");
+        instructions.add("W(T2,x1,6)");
+        instructions.add("W(T1,x1,7)");
+        instructions.add("end(T1)");
+        instructions.add("end(T2)");
+        instructions.add("begin(T3)");
+        instructions.add("R(T3,x1)");
+        Driver.executeFromList(instructions);
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.out)));
+        String output = baos.toString();
+        // The second write of T1 does not queue behind T2, which would be a deadlock of T1 with itself through T2
+        assertFalse(output.contains("aborts"));
+        assertArrayEquals(new String[]{"x1: 6"}, filterLines(output.split("\n")));
+    }
+
     @Test
     void test101 () throws Exception {
 
@@ -1424,5 +1502,205 @@ public class Test1 {
 //        assertEquals("33", lines[3]);
     }
 
+    @Test
+    void testReadOnlySkipsCopyWhichMissedLastCommit() throws Exception {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("begin(T1)");
+        instructions.add("fail(3)");
+        instructions.add("W(T1, x2, 5)");
+        instructions.add("end(T1)");
+        instructions.add("recover(3)");
+        instructions.add("beginRO(T2)");
+        instructions.add("begin(T3)");
+        instructions.add("W(T3, x2, 6)");
+        instructions.add("end(T3)");
+        instructions.add("fail(1)");
+        instructions.add("fail(2)");
+        instructions.add("R(T2, x2)");
+        instructions.add("end(T2)");
+        Driver.executeFromList(instructions);
+        String[] lines = filterLines(baos.toString().split("\n"));
+        assertArrayEquals(new String[]{"x2: 5"}, lines);
+    }
+
+    @Test
+    void testPipelinedExecutionMatchesSequential() throws Exception {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("// deadlock between T1 and T2, T2 is aborted");
+        instructions.add("begin(T1)");
+        instructions.add("begin(T2)");
+        instructions.add("beginRO(T3)");
+        instructions.add("W(T1, x1, 101)");
+        instructions.add("W(T2, x2, 202)");
+        instructions.add("W(T1, x2, 102)");
+        instructions.add("W(T2, x1, 201)");
+        instructions.add("R(T3, x2)");
+        instructions.add("end(T1)");
+        instructions.add("fail(3)");
+        instructions.add("R(T3, x1)");
+        instructions.add("end(T3)");
+        instructions.add("recover(3)");
+        instructions.add("dump()");
+
+        Driver.executeFromList(instructions);
+        String sequentialOutput = baos.toString();
+        baos.reset();
+        Driver.executeFromListPipelined(instructions);
+
+        assertEquals(sequentialOutput, baos.toString());
+    }
+
+    private String runWithDeadlockHandling(DatabaseConfig.DeadlockHandling deadlockHandling, List<String> instructions)
+            throws Exception {
+        Database database = new Database(DatabaseConfig.builder().deadlockHandling(deadlockHandling).build());
+        for (String instruction : instructions) {
+            database.handleQuery(instruction);
+        }
+        return baos.toString();
+    }
+
+    private List<String> crossedWrites() {
+        List<String> instructions = new ArrayList<>();
+        instructions.add("begin(T1)");
+        instructions.add("begin(T2)");
+        instructions.add("W(T1, x1, 101)");
+        instructions.add("W(T2, x2, 202)");
+        instructions.add("W(T1, x2, 102)");
+        instructions.add("W(T2, x1, 201)");
+        instructions.add("end(T1)");
+        instructions.add("begin(T3)");
+        instructions.add("R(T3, x1)");
+        instructions.add("R(T3, x2)");
+        instructions.add("end(T3)");
+        return instructions;
+    }
 
+    @Test
+    void testWaitDieAbortsYoungerRequester() throws Exception {
+        String output = runWithDeadlockHandling(DatabaseConfig.DeadlockHandling.WAIT_DIE, crossedWrites());
+        assertTrue(output.contains("T2 aborts\nReason for abortion: "
+                + AbortReason.WAIT_DIE.getDescription()));
+        assertFalse(output.contains(AbortReason.DEADLOCK.getDescription()));
+        assertArrayEquals(new String[]{"x1: 101", "x2: 102"}, filterLines(output.split("\n")));
+    }
+
+    @Test
+    void testWoundWaitAbortsYoungerHolder() throws Exception {
+        String output = runWithDeadlockHandling(DatabaseConfig.DeadlockHandling.WOUND_WAIT, crossedWrites());
+        // T1 wounds T2 as soon as it waits for x2, so T2 never gets to write x1
+        assertTrue(output.contains("T2 aborts\nReason for abortion: "
+                + AbortReason.WOUND_WAIT.getDescription()));
+        assertArrayEquals(new String[]{"x1: 101", "x2: 102"}, filterLines(output.split("\n")));
+    }
+
+    @Test
+    void testLockWaitTimeoutAbortsTransactionWaitingTooLong() throws Exception {
+        Database database = new Database(DatabaseConfig.builder()
+                .deadlockHandling(DatabaseConfig.DeadlockHandling.TIMEOUT).lockWaitTimeoutTicks(3).build());
+        database.setLockWaitTimeout(database.transaction("T1"), 10);
+        List<String> instructions = crossedWrites();
+        for (String instruction : instructions.subList(0, 6)) {
+            database.handleQuery(instruction);
+        }
+        // T2 has waited two of its three ticks, T1 waited longer but has a longer timeout
+        database.noOp();
+        database.noOp();
+        assertFalse(baos.toString().contains("aborts"));
+        database.noOp();
+        assertTrue(baos.toString().contains("T2 aborts\nReason for abortion: "
+                + AbortReason.LOCK_WAIT_TIMEOUT.getDescription()));
+        assertEquals(1, database.transactionManager.getAbortCount(AbortReason.LOCK_WAIT_TIMEOUT));
+        for (String instruction : instructions.subList(6, instructions.size())) {
+            database.handleQuery(instruction);
+        }
+        String output = baos.toString();
+        assertFalse(output.contains("T1 aborts"));
+        assertArrayEquals(new String[]{"x1: 101", "x2: 102"}, filterLines(output.split("\n")));
+    }
+
+    @Test
+    void testGrantedWriteDropsWaitsForEdgeToFormerHolder() throws Exception {
+        Database database = new Database();
+        database.handleQuery("begin(T1)");
+        database.handleQuery("begin(T2)");
+        database.handleQuery("W(T1, x1, 10)");
+        database.handleQuery("W(T2, x3, 30)");
+        database.handleQuery("W(T2, x1, 20)");
+        // The failure drops the lock of T1, so T2 gets it on recovery and does not wait for T1 any more
+        database.handleQuery("fail(2)");
+        database.handleQuery("recover(2)");
+        database.handleQuery("W(T1, x3, 11)");
+        database.handleQuery("end(T2)");
+        database.handleQuery("end(T1)");
+        String output = baos.toString();
+        assertFalse(output.contains(AbortReason.DEADLOCK.getDescription()));
+        assertTrue(output.contains("T2 commits"));
+        assertTrue(output.contains("T1 aborts\nReason for abortion: " + AbortReason.SITE_FAILURE.getDescription()));
+    }
+
+    @Test
+    void testReadsGrantedTogetherEachHoldReadLock() throws Exception {
+        Database database = new Database();
+        database.handleQuery("begin(T1)");
+        database.handleQuery("begin(T2)");
+        database.handleQuery("begin(T3)");
+        database.handleQuery("W(T1, x2, 21)");
+        database.handleQuery("R(T2, x2)");
+        database.handleQuery("R(T3, x2)");
+        database.handleQuery("end(T1)");
+        // Both reads were granted when T1 committed, so the write of T2 waits for the read lock of T3
+        database.handleQuery("W(T2, x2, 22)");
+        assertTrue(database.transactionManager.isWaiting(database.transaction("T2")));
+        database.handleQuery("W(T3, x2, 23)");
+        database.handleQuery("end(T2)");
+        String output = baos.toString();
+        assertTrue(output.contains("x2: 21\nx2: 21\n"));
+        assertTrue(output.contains("T3 aborts\nReason for abortion: " + AbortReason.DEADLOCK.getDescription()));
+        assertTrue(output.contains("T2 commits"));
+    }
+
+    @Test
+    void testSiteActorsProduceSameOutputAsDirectCalls() throws Exception {
+        List<String> instructions = new ArrayList<>(crossedWrites());
+        instructions.addAll(Arrays.asList("begin(T4)", "beginRO(T5)", "W(T4, x2, 42)", "R(T4, x3)", "fail(2)",
+                "R(T5, x1)", "W(T4, x4, 44)", "recover(2)", "end(T4)", "R(T5, x2)", "end(T5)", "dump()"));
+        String direct = runWithSiteExecution(DatabaseConfig.SiteExecution.DIRECT, instructions);
+        baos.reset();
+        String actors = runWithSiteExecution(DatabaseConfig.SiteExecution.ACTORS, instructions);
+        assertTrue(direct.contains("T4 aborts\nReason for abortion: " + AbortReason.SITE_FAILURE.getDescription()));
+        assertEquals(direct, actors);
+    }
+
+    private String runWithSiteExecution(DatabaseConfig.SiteExecution siteExecution, List<String> instructions)
+            throws Exception {
+        try (Database database = new Database(DatabaseConfig.builder().siteExecution(siteExecution).build())) {
+            for (String instruction : instructions) {
+                database.handleQuery(instruction);
+            }
+        }
+        return baos.toString();
+    }
+
+    @Test
+    void testBackgroundDetectorAbortsYoungestOfCycle() throws Exception {
+        try (Database database = new Database(DatabaseConfig.builder()
+                .deadlockHandling(DatabaseConfig.DeadlockHandling.BACKGROUND_DETECTION).build())) {
+            for (String instruction : crossedWrites().subList(0, 6)) {
+                database.handleQuery(instruction);
+            }
+            // The cycle is found on the detector thread and resolved at a later tick
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (!baos.toString().contains("T2 aborts") && System.nanoTime() < deadline) {
+                database.noOp();
+                Thread.sleep(1);
+            }
+            for (String instruction : crossedWrites().subList(6, 11)) {
+                database.handleQuery(instruction);
+            }
+        }
+        String output = baos.toString();
+        assertTrue(output.contains("T2 aborts\nReason for abortion: " + AbortReason.DEADLOCK.getDescription()));
+        assertFalse(output.contains("T1 aborts"));
+        assertArrayEquals(new String[]{"x1: 101", "x2: 102"}, filterLines(output.split("\n")));
+    }
 }
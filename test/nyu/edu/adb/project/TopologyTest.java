@@ -0,0 +1,59 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopologyTest {
+
+    @Test
+    void testDefaultLayout() {
+        Topology topology = new Topology(DatabaseConfig.defaults());
+        assertArrayEquals(new int[]{2}, topology.sitesOf(1));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, topology.sitesOf(2));
+        assertArrayEquals(new int[]{10}, topology.sitesOf(19));
+        assertTrue(topology.isReplicated(20));
+        assertFalse(topology.isReplicated(11));
+        assertEquals(6, topology.getNumberOfLayouts());
+    }
+
+    @Test
+    void testReplicationFactorAndRangePlacement() {
+        Topology topology = new Topology(DatabaseConfig.builder()
+                .sites(4)
+                .variables(8)
+                .replication(DatabaseConfig.Replication.ALL)
+                .replicationFactor(2)
+                .placement(PlacementPolicy.range())
+                .build());
+        assertArrayEquals(new int[]{1, 2}, topology.sitesOf(1));
+        assertArrayEquals(new int[]{1, 2}, topology.sitesOf(2));
+        assertArrayEquals(new int[]{4, 1}, topology.sitesOf(8));
+    }
+
+    @Test
+    void testExplicitPlacementFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("sites", "3");
+        properties.setProperty("variables", "4");
+        properties.setProperty("replication", "none");
+        properties.setProperty("placement.x2", "3, 1");
+        Topology topology = new Topology(DatabaseConfig.fromProperties(properties));
+        assertArrayEquals(new int[]{3, 1}, topology.sitesOf(2));
+        assertArrayEquals(new int[]{1}, topology.sitesOf(3));
+    }
+
+    @Test
+    void testInvalidPlacementIsRejected() {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .sites(2)
+                .variables(2)
+                .placement(PlacementPolicy.explicit(Collections.singletonMap(1, new int[]{3}),
+                        PlacementPolicy.modulo()))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> new Topology(config));
+    }
+}
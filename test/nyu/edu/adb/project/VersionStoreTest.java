@@ -0,0 +1,97 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionStoreTest {
+
+    @Test
+    void testFloorFindsNewestVersionAtOrBeforeTick() {
+        VersionStore versions = new VersionStore(2);
+        versions.append(1, 0, 10);
+        versions.append(1, 4, 11);
+        versions.append(1, 9, 12);
+        versions.append(1, 15, 13);
+
+        assertEquals(VersionStore.NO_VERSION, versions.floor(0, 100));
+        assertEquals(0, versions.floor(1, 3));
+        assertEquals(1, versions.floor(1, 4));
+        assertEquals(2, versions.floor(1, 14));
+        assertEquals(3, versions.floor(1, Long.MAX_VALUE));
+        assertEquals(9, versions.getTick(1, 2));
+        assertEquals(12, versions.getValue(1, 2));
+        assertEquals(4, versions.getVersionCount(1));
+    }
+
+    @Test
+    void testVersionsAreAppendedInTickOrder() {
+        VersionStore versions = new VersionStore(1);
+        versions.append(0, 5, 50);
+        assertEquals(VersionStore.NO_VERSION, versions.floor(0, 4));
+        versions.append(0, 5, 51);
+        assertEquals(1, versions.getVersionCount(0));
+        assertEquals(51, versions.getValue(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> versions.append(0, 3, 30));
+    }
+
+    @Test
+    void testSiteReadsVersionOfSnapshot() {
+        long[] hostedVariables = new long[1];
+        hostedVariables[0] |= 1L << 6;
+        DataManager dataManager = new DataManager(hostedVariables);
+        dataManager.initializeVar(6, 60);
+        dataManager.write(6, 61, 7);
+
+        assertEquals(60, (int) dataManager.readForRO(6, 0).get());
+        assertEquals(61, (int) dataManager.readForRO(6, 7).get());
+        assertFalse(dataManager.readForRO(6, 5).isPresent());
+        assertEquals(0, dataManager.getVersionTick(6, 5));
+        assertEquals(7, dataManager.getVersionTick(6, 20));
+    }
+
+    @Test
+    void testPruneKeepsVersionVisibleAtLowWaterMark() {
+        VersionStore versions = new VersionStore(1);
+        for (int tick = 0; tick < 40; tick += 4) {
+            versions.append(0, tick, tick * 10);
+        }
+        assertEquals(0, versions.prune(0, 2));
+        assertEquals(5, versions.prune(0, 21));
+        assertEquals(5, versions.getVersionCount(0));
+        assertEquals(20, versions.getTick(0, 0));
+        assertEquals(200, versions.getValue(0, versions.floor(0, 21)));
+        assertEquals(4, versions.prune(0, 1000));
+        assertEquals(360, versions.getValue(0, 0));
+        versions.append(0, 50, 500);
+        assertEquals(2, versions.getVersionCount(0));
+    }
+
+    @Test
+    void testCollectorKeepsVersionsOfLiveReadOnlyTransaction() throws Exception {
+        Database database = new Database(DatabaseConfig.builder().versionCollectionInterval(0).build());
+        database.handleQuery("begin(T1)");
+        database.handleQuery("W(T1, x2, 21)");
+        database.handleQuery("end(T1)");
+        database.handleQuery("beginRO(T2)");
+        database.handleQuery("begin(T3)");
+        database.handleQuery("W(T3, x2, 22)");
+        database.handleQuery("end(T3)");
+        database.handleQuery("begin(T4)");
+        database.handleQuery("W(T4, x2, 23)");
+        database.handleQuery("end(T4)");
+
+        VersionCollector collector = database.getVersionCollector();
+        long lowWaterMark = database.transactionManager.getLowWaterMark(100);
+        assertEquals(4, lowWaterMark);
+        // x2 is at every site and only its initial version is older than the snapshot of T2
+        assertEquals(10, collector.collect(lowWaterMark));
+        assertEquals(0, collector.collect(lowWaterMark));
+
+        database.handleQuery("end(T2)");
+        assertEquals(100, database.transactionManager.getLowWaterMark(100));
+        assertEquals(20, collector.collect(100));
+        assertEquals(30, collector.getReclaimedVersions());
+        assertEquals(3, collector.getPasses());
+    }
+}
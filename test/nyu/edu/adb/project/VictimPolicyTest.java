@@ -0,0 +1,98 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VictimPolicyTest {
+
+    private final Map<Integer, Transaction> transactions = new HashMap<>();
+
+    private ReadWriteTransaction begin(int id, long tickTime, int restartCount) {
+        ReadWriteTransaction transaction = new ReadWriteTransaction(id, "T" + id, tickTime, restartCount);
+        transactions.put(id, transaction);
+        return transaction;
+    }
+
+    private List<Integer> chooseVictims(VictimPolicy policy, List<List<Integer>> cycles) {
+        return policy.chooseVictims(cycles, transactions::get);
+    }
+
+    @Test
+    void testYoungestPolicyAbortsYoungestOfAllCycles() {
+        begin(1, 0, 0);
+        begin(2, 5, 0);
+        begin(3, 3, 0);
+        begin(4, 9, 0);
+        List<List<Integer>> cycles = Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4));
+        assertEquals(Collections.singletonList(4), chooseVictims(VictimPolicy.youngest(), cycles));
+    }
+
+    @Test
+    void testCostBasedPolicyCoversAllCyclesWithSharedTransaction() {
+        begin(1, 0, 0);
+        begin(2, 1, 0);
+        begin(3, 2, 0);
+        begin(4, 3, 0);
+        List<List<Integer>> cycles = Arrays.asList(Arrays.asList(1, 2), Arrays.asList(2, 3), Arrays.asList(2, 4));
+        assertEquals(Collections.singletonList(2), chooseVictims(VictimPolicy.costBased(), cycles));
+
+        List<List<Integer>> disjointCycles = Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4));
+        List<Integer> victims = chooseVictims(VictimPolicy.costBased(), disjointCycles);
+        assertEquals(Arrays.asList(4, 2), victims);
+    }
+
+    @Test
+    void testCostBasedPolicySparesTransactionWithMoreWork() {
+        ReadWriteTransaction older = begin(1, 0, 0);
+        ReadWriteTransaction younger = begin(2, 4, 0);
+        older.addReadLock(1, 2);
+        for (int variable = 2; variable <= 6; variable++) {
+            younger.addWriteLock(variable, new int[]{1});
+            younger.writeToVariable(variable, variable);
+        }
+        List<List<Integer>> cycles = Collections.singletonList(Arrays.asList(1, 2));
+        assertEquals(Collections.singletonList(1), chooseVictims(VictimPolicy.costBased(), cycles));
+        assertEquals(Collections.singletonList(2), chooseVictims(VictimPolicy.youngest(), cycles));
+    }
+
+    @Test
+    void testCostBasedPolicySparesRestartedTransaction() {
+        begin(1, 0, 0);
+        begin(2, 2, 3);
+        List<List<Integer>> cycles = Collections.singletonList(Arrays.asList(1, 2));
+        assertEquals(Collections.singletonList(1), chooseVictims(VictimPolicy.costBased(), cycles));
+        assertEquals(Collections.singletonList(2), chooseVictims(VictimPolicy.costBased(1, 1, 1, 0), cycles));
+    }
+
+    @Test
+    void testRestartCountOfTransactionBegunAgainAfterAbort() throws Exception {
+        Database database = new Database(DatabaseConfig.builder().victimPolicy(VictimPolicy.costBased()).build());
+        database.handleQuery("begin(T1)");
+        database.handleQuery("begin(T2)");
+        database.handleQuery("W(T1, x1, 10)");
+        database.handleQuery("W(T2, x2, 20)");
+        database.handleQuery("W(T1, x2, 11)");
+        database.handleQuery("W(T2, x1, 21)");
+        database.handleQuery("end(T1)");
+        assertEquals(1, database.transactionManager.getAbortCount(AbortReason.DEADLOCK));
+        assertFalse(database.transactionManager.isActive(database.transaction("T2")));
+
+        database.handleQuery("begin(T2)");
+        database.handleQuery("begin(T3)");
+        database.handleQuery("W(T3, x4, 30)");
+        database.handleQuery("W(T2, x6, 22)");
+        database.handleQuery("W(T3, x6, 31)");
+        database.handleQuery("W(T2, x4, 23)");
+        database.handleQuery("end(T2)");
+        // T2 is younger, but it was aborted before, so T3 is aborted this time
+        assertEquals(2, database.transactionManager.getAbortCount(AbortReason.DEADLOCK));
+        assertFalse(database.transactionManager.isActive(database.transaction("T3")));
+    }
+}
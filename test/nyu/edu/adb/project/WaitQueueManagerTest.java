@@ -0,0 +1,94 @@
+package nyu.edu.adb.project;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitQueueManagerTest {
+
+    WaitQueueManager waitQueueManager = new WaitQueueManager();
+
+    private void read(int transactionId, int variable) {
+        waitQueueManager.addWaitingOperation(variable,
+                new Operation(transactionId, Operation.OperationType.READ, variable));
+    }
+
+    private void write(int transactionId, int variable) {
+        waitQueueManager.addWaitingOperation(variable,
+                new Operation(transactionId, Operation.OperationType.WRITE, variable, transactionId));
+    }
+
+    @Test
+    void testQueueOrder() {
+        read(1, 4);
+        read(2, 4);
+        write(3, 4);
+        read(4, 4);
+        read(5, 4);
+
+        assertTrue(waitQueueManager.precedingWriteOperationExists(4));
+        assertEquals(3, (int) waitQueueManager.getLastWriteTransaction(4).get());
+        assertEquals(Arrays.asList(5, 4), waitQueueManager.getQueueHoldersForWriteOperation(4));
+        assertEquals(1, waitQueueManager.peekAtNextWaitingOperation(4).get().getTransactionId());
+
+        assertEquals(2, waitQueueManager.pollUntilNextWriteOperation(4).size());
+        assertEquals(3, waitQueueManager.pollNextWaitingOperation(4).get().getTransactionId());
+        assertFalse(waitQueueManager.precedingWriteOperationExists(4));
+        assertEquals(2, waitQueueManager.pollUntilNextWriteOperation(4).size());
+        assertFalse(waitQueueManager.isOperationAlreadyWaiting(4));
+        assertFalse(waitQueueManager.pollNextWaitingOperation(4).isPresent());
+        assertFalse(waitQueueManager.isOperationAlreadyWaiting(400));
+    }
+
+    @Test
+    void testRemovingTransactionRemovesAllItsOperations() {
+        write(1, 2);
+        read(2, 2);
+        write(2, 3);
+        write(1, 3);
+        read(2, 5);
+        read(3, 5);
+
+        waitQueueManager.pollNextWaitingOperation(2);
+        waitQueueManager.removeAllPendingOperationOfTransaction(2);
+        assertFalse(waitQueueManager.isOperationAlreadyWaiting(2));
+        assertEquals(Collections.singletonList(1), waitQueueManager.getQueueHoldersForWriteOperation(3));
+        assertEquals(3, waitQueueManager.peekAtNextWaitingOperation(5).get().getTransactionId());
+
+        waitQueueManager.removeAllPendingOperationOfTransaction(1);
+        waitQueueManager.removeAllPendingOperationOfTransaction(7);
+        assertFalse(waitQueueManager.isOperationAlreadyWaiting(3));
+        waitQueueManager.removeAllPendingOperationOfTransaction(3);
+        assertFalse(waitQueueManager.isOperationAlreadyWaiting(5));
+    }
+
+    @Test
+    void testQueueShapeAfterRemovingLastWrite() {
+        write(1, 6);
+        read(2, 6);
+        read(3, 6);
+        write(4, 6);
+        read(5, 6);
+
+        waitQueueManager.removeAllPendingOperationOfTransaction(4);
+        assertEquals(1, (int) waitQueueManager.getLastWriteTransaction(6).get());
+        assertEquals(Arrays.asList(5, 3, 2), waitQueueManager.getQueueHoldersForWriteOperation(6));
+
+        waitQueueManager.removeAllPendingOperationOfTransaction(3);
+        assertEquals(Arrays.asList(5, 2), waitQueueManager.getQueueHoldersForWriteOperation(6));
+
+        waitQueueManager.pollNextWaitingOperation(6);
+        assertFalse(waitQueueManager.precedingWriteOperationExists(6));
+        assertFalse(waitQueueManager.getLastWriteTransaction(6).isPresent());
+        assertEquals(Arrays.asList(5, 2), waitQueueManager.getQueueHoldersForWriteOperation(6));
+
+        write(6, 6);
+        assertEquals(Collections.singletonList(6), waitQueueManager.getQueueHoldersForWriteOperation(6));
+        assertEquals(2, waitQueueManager.pollUntilNextWriteOperation(6).size());
+        waitQueueManager.removeAllPendingOperationOfTransaction(6);
+        assertTrue(waitQueueManager.getQueueHoldersForWriteOperation(6).isEmpty());
+    }
+}